@@ -0,0 +1,37 @@
+package com.datagenerator;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Loads {@code application.properties} for the non-interactive entry points.
+ */
+public final class AppProperties {
+
+    private AppProperties() {
+    }
+
+    /**
+     * Loads {@code application.properties} from the classpath and overlays an optional file.
+     *
+     * @param overridePath A properties file whose keys take precedence, or {@code null}
+     * @return The merged properties, or {@code null} if a file could not be read
+     */
+    public static Properties load(String overridePath) {
+        Properties properties = new Properties();
+        try {
+            properties.load(AppProperties.class.getResourceAsStream("/application.properties"));
+            if (overridePath != null) {
+                try (InputStream in = new FileInputStream(overridePath)) {
+                    properties.load(in);
+                }
+            }
+            return properties;
+        } catch (IOException e) {
+            System.out.println("Error loading properties: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.datagenerator;
+
+import java.io.IOException;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Executes a batch of rows as one JDBC batch and isolates the rows the database rejects.
+ *
+ * <p>When {@code executeBatch()} fails with a {@link BatchUpdateException}, the
+ * transaction is rolled back and the batch is split in halves; halves that succeed
+ * are committed, halves that fail are split again until the failing rows stand alone.
+ * Those are written to the {@link RejectFile} with their error. A batch of {@code n}
+ * rows with {@code k} bad rows costs about {@code 2k log2(n)} extra round trips, and
+ * the next batch runs at full size again.</p>
+ *
+ * <p>Only failures the rows themselves cause are bisected: those with an SQLState of
+ * class 22 (data exception) or 23 (integrity constraint violation). Drivers also report
+ * deadlocks, lock wait timeouts and lost connections as {@link BatchUpdateException};
+ * those say nothing about the rows, so the transaction is rolled back and the exception
+ * rethrown. Any other {@link SQLException}, from binding a row or from the commit,
+ * also clears the statement's batch and rolls back before it is rethrown, so the
+ * statement and connection can be reused. The connection must not be in auto-commit
+ * mode, so that a failed batch leaves nothing behind.</p>
+ */
+public class BatchBisector {
+
+    /** Binds one row of a batch to the parameters of the statement. */
+    public interface RowBinder {
+        void bind(PreparedStatement statement, RowBatch batch, int row) throws SQLException;
+    }
+
+    private final PreparedStatement statement;
+    private final Connection connection;
+    private final RowBinder binder;
+    private final RejectFile rejects;
+    private String component = "BatchBisector";
+    private int worker = -1;
+
+    public BatchBisector(PreparedStatement statement, RowBinder binder, RejectFile rejects) throws SQLException {
+        this.statement = statement;
+        this.connection = statement.getConnection();
+        this.binder = binder;
+        this.rejects = rejects;
+    }
+
+    /**
+     * Names the caller in the {@link JfrEvents} recorded for its batches.
+     *
+     * @param component The class inserting the rows
+     * @param worker Its worker number, or -1
+     */
+    public void setEventSource(String component, int worker) {
+        this.component = component;
+        this.worker = worker;
+    }
+
+    /**
+     * Inserts and commits every row of the batch the database accepts.
+     *
+     * @param batch The rows to insert
+     * @return The number of rows rejected
+     * @throws SQLException If the database fails for a reason other than the rows
+     * @throws IOException If a rejected row cannot be written to the reject file
+     */
+    public int execute(RowBatch batch) throws SQLException, IOException {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        return attempt(batch, 0, batch.size());
+    }
+
+    /** Inserts a range of rows, splitting it in halves if the database refuses it. */
+    private int attempt(RowBatch batch, int from, int to) throws SQLException, IOException {
+        try {
+            executeRange(batch, from, to);
+            return 0;
+        } catch (SQLException e) {
+            rollback(e);
+            if (!(e instanceof BatchUpdateException) || !isCausedByData(e)) {
+                throw e;
+            }
+            if (to - from == 1) {
+                rejects.reject(batch, from, e.getMessage());
+                return 1;
+            }
+            int mid = (from + to) >>> 1;
+            return attempt(batch, from, mid) + attempt(batch, mid, to);
+        }
+    }
+
+    /** Rolls back after a failure, keeping that failure as the one reported. */
+    private void rollback(SQLException failure) throws SQLException {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            failure.addSuppressed(e);
+            throw failure;
+        }
+    }
+
+    /**
+     * Tells whether a failure is due to the rows, judging by the SQLState class of the
+     * exception or, if it has none, of the exceptions chained to it.
+     */
+    static boolean isCausedByData(SQLException e) {
+        for (SQLException current = e; current != null; current = current.getNextException()) {
+            String state = current.getSQLState();
+            if (state != null && state.length() >= 2) {
+                return state.startsWith("22") || state.startsWith("23");
+            }
+        }
+        return e.getCause() instanceof SQLException && isCausedByData((SQLException) e.getCause());
+    }
+
+    private void executeRange(RowBatch batch, int from, int to) throws SQLException {
+        JfrEvents.ExecuteBatch execute = new JfrEvents.ExecuteBatch();
+        execute.begin();
+        try {
+            for (int row = from; row < to; row++) {
+                binder.bind(statement, batch, row);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        } catch (SQLException e) {
+            execute.failed = true;
+            try {
+                // Drop rows bound before the failure so the next attempt starts empty
+                statement.clearBatch();
+            } catch (SQLException clear) {
+                e.addSuppressed(clear);
+            }
+            throw e;
+        } finally {
+            JfrEvents.finish(execute, component, worker, to - from);
+        }
+        JfrEvents.Commit commit = new JfrEvents.Commit();
+        commit.begin();
+        connection.commit();
+        JfrEvents.finish(commit, component, worker, to - from);
+    }
+}
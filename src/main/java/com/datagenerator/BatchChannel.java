@@ -0,0 +1,36 @@
+package com.datagenerator;
+
+/**
+ * An ordered hand-off of {@link RowBatch}es from generation to one sink's workers.
+ */
+public interface BatchChannel extends AutoCloseable {
+
+    /**
+     * Hands a batch to the channel, which takes over one reference to it
+     * and releases it once it no longer needs the batch, also when put fails.
+     *
+     * @param batch The batch to pass on
+     * @throws InterruptedException If interrupted while waiting for space
+     */
+    void put(RowBatch batch) throws InterruptedException;
+
+    /**
+     * Returns the next batch, waiting for one if necessary. The caller must
+     * {@link RowBatch#release()} it when done.
+     *
+     * @return The next batch, or {@code null} once {@link #finish()} was called and all batches were taken
+     * @throws InterruptedException If interrupted while waiting
+     */
+    RowBatch take() throws InterruptedException;
+
+    /**
+     * Signals that no more batches will be put.
+     *
+     * @throws InterruptedException If interrupted while signalling
+     */
+    void finish() throws InterruptedException;
+
+    /** Releases any resources held by the channel. */
+    @Override
+    void close();
+}
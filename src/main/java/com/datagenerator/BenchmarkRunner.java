@@ -0,0 +1,169 @@
+package com.datagenerator;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Non-interactive throughput benchmark over the fan-out pipeline.
+ *
+ * <p>Sweeps every combination of the configured thread counts, batch sizes, sinks and
+ * record counts, and appends one CSV line per configuration to the report file with
+ * rows/sec, p50/p99 batch write latency and peak heap. Runs from different builds
+ * append to the same report, so regressions show up by comparing {@code run_at} groups.</p>
+ *
+ * <p>Settings are read from the {@code bench.*} keys of {@code application.properties},
+ * optionally overridden by a properties file given as the first argument. By default the
+ * database is an in-memory H2 instance in MySQL mode; point {@code bench.db.url} at a
+ * local MySQL to benchmark the real server.</p>
+ */
+public class BenchmarkRunner {
+    private static final String TABLE_NAME = "bench_tb";
+    private static final String REPORT_HEADER =
+        "run_at,threads,batch_size,sink,records,seconds,rows_per_sec,p50_batch_ms,p99_batch_ms,peak_heap_mb,success";
+
+    public static void main(String[] args) {
+        Properties properties = AppProperties.load(args.length > 0 ? args[0] : null);
+        if (properties == null) {
+            return;
+        }
+
+        String url = properties.getProperty("bench.db.url", "jdbc:h2:mem:bench;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        String user = properties.getProperty("bench.db.user", "sa");
+        String password = properties.getProperty("bench.db.password", "");
+        String csvPath = properties.getProperty("bench.csv.path", "bench/bench.csv");
+        String reportPath = properties.getProperty("bench.report.path", "bench/report.csv");
+        int queueCapacity = Integer.parseInt(properties.getProperty("pipeline.queue.capacity", "8"));
+        int[] threadCounts = parseInts(properties.getProperty("bench.threads", "1,2,4"));
+        int[] batchSizes = parseInts(properties.getProperty("bench.batchSizes", "1000,5000"));
+        String[] sinks = properties.getProperty("bench.sinks", "db,csv,both").split(",");
+        long[] recordCounts = parseLongs(properties.getProperty("bench.records", "100000"));
+
+        String runAt = Instant.now().toString();
+        new File(csvPath).getAbsoluteFile().getParentFile().mkdirs();
+        File reportFile = new File(reportPath);
+        reportFile.getAbsoluteFile().getParentFile().mkdirs();
+        boolean writeHeader = !reportFile.exists() || reportFile.length() == 0;
+
+        try (PrintWriter report = new PrintWriter(new FileWriter(reportFile, true))) {
+            if (writeHeader) {
+                report.println(REPORT_HEADER);
+            }
+            for (long records : recordCounts) {
+                for (String sink : sinks) {
+                    for (int threads : threadCounts) {
+                        for (int batchSize : batchSizes) {
+                            String line = runConfiguration(url, user, password, csvPath, queueCapacity,
+                                threads, batchSize, sink.trim(), records);
+                            report.println(runAt + "," + line);
+                            report.flush();
+                            System.out.println("Benchmark: " + line);
+                        }
+                    }
+                }
+            }
+            System.out.println("Benchmark report written to " + reportFile.getAbsolutePath());
+        } catch (IOException e) {
+            System.out.println("Error writing benchmark report: " + e.getMessage());
+        } catch (SQLException e) {
+            System.out.println("Database error: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Benchmark interrupted");
+        }
+    }
+
+    private static String runConfiguration(String url, String user, String password, String csvPath,
+            int queueCapacity, int threads, int batchSize, String sink, long records)
+            throws SQLException, IOException, InterruptedException {
+        boolean useDb = sink.equals("db") || sink.equals("both");
+        boolean useCsv = sink.equals("csv") || sink.equals("both");
+        if (!useDb && !useCsv) {
+            throw new IllegalArgumentException("Unknown sink: " + sink);
+        }
+
+        FanOutPipeline pipeline = new FanOutPipeline(threads, records, 1, batchSize, queueCapacity);
+        if (useDb) {
+            try (Connection conn = DriverManager.getConnection(url, user, password);
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("DROP TABLE IF EXISTS " + TABLE_NAME);
+                JdbcSink.createTable(conn, TABLE_NAME);
+            }
+            List<JdbcSink> dbSinks = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                dbSinks.add(new JdbcSink(DriverManager.getConnection(url, user, password), TABLE_NAME));
+            }
+            pipeline.addSink("DB", dbSinks);
+        }
+        if (useCsv) {
+            pipeline.addSink("CSV", List.of(new CsvSink(csvPath)));
+        }
+
+        System.gc();
+        resetPeakHeap();
+        long start = System.nanoTime();
+        pipeline.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        LatencyHistogram latency = new LatencyHistogram();
+        if (useDb) {
+            latency.add(pipeline.getBatchLatency("DB"));
+        }
+        if (useCsv) {
+            latency.add(pipeline.getBatchLatency("CSV"));
+        }
+
+        return String.format("%d,%d,%s,%d,%.3f,%.1f,%.3f,%.3f,%d,%b",
+            threads, batchSize, sink, records, seconds, records / seconds,
+            latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(99) / 1e6,
+            peakHeap() / 1024 / 1024, pipeline.isSuccessful());
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static int[] parseInts(String value) {
+        String[] parts = value.split(",");
+        int[] result = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Integer.parseInt(parts[i].trim());
+        }
+        return result;
+    }
+
+    private static long[] parseLongs(String value) {
+        String[] parts = value.split(",");
+        long[] result = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Long.parseLong(parts[i].trim());
+        }
+        return result;
+    }
+}
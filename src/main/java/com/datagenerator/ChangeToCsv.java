@@ -1,6 +1,19 @@
 package com.datagenerator;
-import java.io.FileWriter;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -8,10 +21,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Properties;
 
-import com.opencsv.CSVWriter;
-
 /**
- * Exports database records to CSV format using OpenCSV library.
+ * Exports database records to CSV format.
  * This class provides functionality to read data from a database table
  * and write it to a CSV file with proper formatting and error handling.
  * 
@@ -21,7 +32,15 @@ import com.opencsv.CSVWriter;
  *   <li>Writing to CSV with headers</li>
  *   <li>Configurable output path</li>
  *   <li>Progress tracking</li>
+ *   <li>Incremental export of rows added since the last run</li>
  * </ul>
+ *
+ * <p>Every export records a high-water mark (the last exported id) and the committed
+ * length of the CSV in a small state file next to it. An incremental run streams only
+ * rows with a higher id, in id order, and either appends them to the CSV or writes them
+ * to a new segment file. Appends are made atomic by syncing the data before the state
+ * file is replaced, and by truncating the CSV back to its committed length when a
+ * previous run died half-way.</p>
  * 
  * @author Andre Byukusenge
  * @version 1.0
@@ -30,6 +49,12 @@ import com.opencsv.CSVWriter;
 public class ChangeToCsv {
       /** Default output file path */
     private static final String CSVFILE = "csv/people.csv";
+    /** State file holding the high-water mark of the last export */
+    private static final String STATEFILE = CSVFILE + ".state";
+    private static final String HEADER = "first_name,last_name,email\n";
+    private static final String SELECT_COLUMNS = "SELECT id, first_name, last_name, email FROM persons ";
+    /** Number of rows read from the ResultSet before they are encoded */
+    private static final int BATCH_SIZE = 1000;
 
     /**
      * Writes the results of a database query to a CSV file.
@@ -42,44 +67,229 @@ public class ChangeToCsv {
      */
     public static void WriteToCsv(ResultSet resultSet) {
     
-     int totalRecords = 0;
-
-     try (CSVWriter fileWriter = new CSVWriter(new FileWriter(CSVFILE),
-     CSVWriter.DEFAULT_SEPARATOR,
-     CSVWriter.NO_QUOTE_CHARACTER,
-     CSVWriter.DEFAULT_ESCAPE_CHARACTER,
-     CSVWriter.DEFAULT_LINE_END)) {
+     Path csvPath = Paths.get(CSVFILE);
+     try (FileChannel channel = FileChannel.open(csvPath, StandardOpenOption.CREATE,
+             StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
            
-           String[] header = {"first_name", "last_name", "email"};
-           fileWriter.writeNext(header);
-             while(resultSet.next()) {
-                String[] data = {
-                    resultSet.getString("first_name"),
-                    resultSet.getString("last_name"),
-                    resultSet.getString("email")
-                }
-                ;
-                fileWriter.writeNext(data);
-                   totalRecords++;
-
-
-            }
+           long[] lastId = {0};
+           long totalRecords = appendRows(resultSet, channel, true, lastId);
+           channel.force(true);
+           saveState(Paths.get(STATEFILE), lastId[0], channel.size());
          System.out.println("CSV file created successfully. Total records: " + totalRecords);
 
 
             
-        } catch (IOException | SQLException e) {
+        } catch (SQLException e) {
             System.err.println("SQL Exception: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Error writing CSV file: " + e.getMessage());
         }
         
     }
 
+    /**
+     * Exports only the rows added since the last export.
+     * Rows with an id above the recorded high-water mark are streamed in id order and
+     * either appended to the CSV file or written to a new segment file named after the
+     * first id it may contain. The state file is only replaced once the rows are on disk.
+     * Appending refuses to run when the CSV exists without a state file, or is shorter than
+     * the recorded length, since neither tells how much of the file is committed.
+     *
+     * @param conn The database connection
+     * @param segmentMode {@code true} to write a new segment file instead of appending
+     * @throws IOException If the CSV or state file cannot be written
+     * @throws SQLException If the query fails
+     */
+    public static void exportIncremental(Connection conn, boolean segmentMode) throws IOException, SQLException {
+        exportIncremental(conn, Paths.get(CSVFILE), segmentMode);
+    }
+
+    /**
+     * Exports the rows added since the last export to the given CSV file, keeping its
+     * state file next to it.
+     *
+     * @param conn The database connection
+     * @param csvPath The CSV file to append to, or to name segments after
+     * @param segmentMode {@code true} to write a new segment file instead of appending
+     * @throws IOException If the CSV or state file cannot be written
+     * @throws SQLException If the query fails
+     */
+    static void exportIncremental(Connection conn, Path csvPath, boolean segmentMode)
+            throws IOException, SQLException {
+        Path statePath = Paths.get(csvPath + ".state");
+        Properties state = loadState(statePath);
+        long watermark = Long.parseLong(state.getProperty("last.id", "0"));
+        String recordedLength = state.getProperty("csv.length");
+        long committedLength = recordedLength == null ? 0 : Long.parseLong(recordedLength);
+        if (!segmentMode && Files.exists(csvPath)) {
+            long size = Files.size(csvPath);
+            if (recordedLength == null && size > 0) {
+                throw new IOException(csvPath + " exists but " + statePath
+                        + " is missing; run a full export or remove the CSV first");
+            }
+            if (size < committedLength) {
+                throw new IOException(csvPath + " holds " + size + " bytes but " + statePath
+                        + " records " + committedLength + "; run a full export first");
+            }
+        }
+
+        try (PreparedStatement preparedStatement = conn.prepareStatement(
+                SELECT_COLUMNS + "WHERE id > ? ORDER BY id",
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            preparedStatement.setFetchSize(streamingFetchSize(conn));
+            preparedStatement.setLong(1, watermark);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                long[] lastId = {watermark};
+                long exported;
+
+                if (segmentMode) {
+                    Path segment = Paths.get(csvPath.toString().replace(".csv", "." + (watermark + 1) + ".csv"));
+                    Path tempSegment = Paths.get(segment + ".tmp");
+                    try (FileChannel channel = FileChannel.open(tempSegment, StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                        exported = appendRows(resultSet, channel, true, lastId);
+                        channel.force(true);
+                    }
+                    if (exported == 0) {
+                        Files.delete(tempSegment);
+                    } else {
+                        Files.move(tempSegment, segment, StandardCopyOption.REPLACE_EXISTING,
+                                StandardCopyOption.ATOMIC_MOVE);
+                        System.out.println("Wrote segment " + segment);
+                    }
+                } else {
+                    try (FileChannel channel = FileChannel.open(csvPath, StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE)) {
+                        if (channel.size() > committedLength) {
+                            System.out.println("Discarding " + (channel.size() - committedLength)
+                                    + " bytes left by an interrupted export");
+                            channel.truncate(committedLength);
+                        }
+                        channel.position(committedLength);
+                        exported = appendRows(resultSet, channel, committedLength == 0, lastId);
+                        channel.force(true);
+                        committedLength = channel.size();
+                    }
+                }
+
+                saveState(statePath, lastId[0], committedLength);
+                System.out.printf("Incremental export: %d new records after id %d, high-water mark now %d%n",
+                        exported, watermark, lastId[0]);
+            }
+        }
+    }
+
+    /**
+     * Streams rows from the ResultSet into the channel at its current position.
+     *
+     * @param resultSet Rows with id, first_name, last_name and email
+     * @param channel The destination file
+     * @param writeHeader Whether to write the CSV header first
+     * @param lastId Receives the id of the last row written
+     * @return The number of rows written
+     */
+    private static long appendRows(ResultSet resultSet, FileChannel channel, boolean writeHeader, long[] lastId)
+            throws IOException, SQLException {
+        long totalRecords = 0;
+        RowBatch batch = new RowBatch(BATCH_SIZE, 3);
+        CsvRowEncoder encoder = new CsvRowEncoder(false, false);
+
+        // The writer must not close the channel: the caller still syncs it
+        Writer fileWriter = new BufferedWriter(Channels.newWriter(new NonClosingChannel(channel),
+                StandardCharsets.UTF_8.newEncoder(), -1));
+        if (writeHeader) {
+            fileWriter.write(HEADER);
+        }
+        while (resultSet.next()) {
+            batch.addRow(resultSet.getLong("id"));
+            batch.addText(resultSet.getString("first_name"));
+            batch.addText(resultSet.getString("last_name"));
+            batch.addText(resultSet.getString("email"));
+            totalRecords++;
+
+            if (batch.isFull()) {
+                lastId[0] = batch.getId(batch.size() - 1);
+                encoder.encode(batch, fileWriter);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            lastId[0] = batch.getId(batch.size() - 1);
+            encoder.encode(batch, fileWriter);
+        }
+        fileWriter.flush();
+        return totalRecords;
+    }
+
+    /**
+     * Returns a fetch size that streams rows instead of buffering the whole result.
+     * MySQL only streams with {@code Integer.MIN_VALUE}; other drivers take a row count.
+     */
+    private static int streamingFetchSize(Connection conn) throws SQLException {
+        return conn.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql")
+                ? Integer.MIN_VALUE : BATCH_SIZE;
+    }
+
+    private static Properties loadState(Path statePath) throws IOException {
+        Properties state = new Properties();
+        if (Files.exists(statePath)) {
+            try (InputStream in = Files.newInputStream(statePath)) {
+                state.load(in);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Replaces the state file atomically, so a crash leaves either the old or the new mark.
+     */
+    private static void saveState(Path statePath, long lastId, long csvLength) throws IOException {
+        Properties state = new Properties();
+        state.setProperty("last.id", Long.toString(lastId));
+        state.setProperty("csv.length", Long.toString(csvLength));
+        Path tempPath = Paths.get(statePath + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = Channels.newOutputStream(new NonClosingChannel(channel));
+            state.store(out, "ChangeToCsv high-water mark");
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tempPath, statePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Lets a stream or writer be closed without closing the underlying file channel. */
+    private static final class NonClosingChannel implements WritableByteChannel {
+        private final FileChannel channel;
+
+        private NonClosingChannel(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
     /**
      * Main method to execute the database to CSV conversion.
      * Reads database configuration from application.properties, executes a query
      * to select all persons, and writes the results to a CSV file.
+     * With {@code incremental} as first argument only rows added since the last run
+     * are exported; add {@code segment} to write them to a new file instead of appending.
      *
-     * @param args Command line arguments (not used)
+     * @param args {@code [full|incremental] [append|segment]}, defaulting to a full export
      * @throws IOException If properties file cannot be read or CSV file cannot be written
      * @throws SQLException If database operations fail
      */
@@ -98,14 +308,28 @@ public class ChangeToCsv {
     String password = properties.getProperty("db.password");
 
 
+    boolean incremental = args.length > 0 && args[0].equalsIgnoreCase("incremental");
+    boolean segmentMode = args.length > 1 && args[1].equalsIgnoreCase("segment");
+
     try(Connection conn = DriverManager.getConnection(url, user, password)) {
-        String selectQuery = "SELECT * FROM persons where ";
-        PreparedStatement preparedStatement = conn.prepareStatement(selectQuery);
-        ResultSet resultSet = preparedStatement.executeQuery();
-        WriteToCsv(resultSet);
+        Files.createDirectories(Paths.get(CSVFILE).toAbsolutePath().getParent());
+        if (incremental) {
+            exportIncremental(conn, segmentMode);
+            return;
+        }
+        String selectQuery = SELECT_COLUMNS + "ORDER BY id";
+        try (PreparedStatement preparedStatement = conn.prepareStatement(selectQuery,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            preparedStatement.setFetchSize(streamingFetchSize(conn));
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                WriteToCsv(resultSet);
+            }
+        }
     } catch(SQLException e) {
         System.err.println("SQL Exception: " + e.getMessage());
 
+    } catch(IOException e) {
+        System.err.println("Error writing CSV file: " + e.getMessage());
     }
 
 
@@ -0,0 +1,160 @@
+package com.datagenerator;
+
+/**
+ * Streaming data-quality statistics over generated person rows.
+ *
+ * <p>For the id and every text column it keeps a {@link HyperLogLog} distinct count;
+ * text columns also get a histogram of value lengths, the empty-value count and the
+ * mean length. Duplicates are estimated as rows minus distinct values and shown as
+ * {@code ~0} when that is within two standard errors of the sketch. Everything is
+ * updated from {@link RowBatch}es without creating strings, so a generator thread can
+ * keep its own instance, update it per batch and {@link #merge} it into a total at
+ * the end. Not thread-safe.</p>
+ */
+public class ColumnStatistics {
+    private static final String[] TEXT_COLUMN_NAMES = {"first_name", "last_name", "email"};
+    private static final int MAX_TRACKED_LENGTH = 256;
+    /** 64KB per sketch for a standard error of 0.4%, enough to tell real duplicates from noise. */
+    private static final int PRECISION = 16;
+
+    private final int textColumns;
+    private final HyperLogLog ids = new HyperLogLog(PRECISION);
+    private final HyperLogLog[] distinct;
+    private final long[][] lengthCounts;
+    private final long[] totalLength;
+    private final long[] emptyValues;
+    private long rows;
+
+    public ColumnStatistics(int textColumns) {
+        this.textColumns = textColumns;
+        this.distinct = new HyperLogLog[textColumns];
+        this.lengthCounts = new long[textColumns][MAX_TRACKED_LENGTH + 1];
+        this.totalLength = new long[textColumns];
+        this.emptyValues = new long[textColumns];
+        for (int column = 0; column < textColumns; column++) {
+            distinct[column] = new HyperLogLog(PRECISION);
+        }
+    }
+
+    /**
+     * Adds every row of a batch.
+     *
+     * @param batch The rows to add
+     */
+    public void update(RowBatch batch) {
+        char[] chars = batch.getChars();
+        for (int row = 0; row < batch.size(); row++) {
+            ids.add(HyperLogLog.hash(batch.getId(row)));
+            for (int column = 0; column < textColumns; column++) {
+                int start = batch.getTextStart(row, column);
+                int length = batch.getTextLength(row, column);
+                distinct[column].add(HyperLogLog.hash(chars, start, length));
+                lengthCounts[column][Math.min(length, MAX_TRACKED_LENGTH)]++;
+                totalLength[column] += length;
+                if (length == 0) {
+                    emptyValues[column]++;
+                }
+            }
+        }
+        rows += batch.size();
+    }
+
+    /**
+     * Adds the statistics of another instance, typically another thread's.
+     *
+     * @param other Statistics over the same columns
+     */
+    public void merge(ColumnStatistics other) {
+        ids.merge(other.ids);
+        for (int column = 0; column < textColumns; column++) {
+            distinct[column].merge(other.distinct[column]);
+            for (int length = 0; length <= MAX_TRACKED_LENGTH; length++) {
+                lengthCounts[column][length] += other.lengthCounts[column][length];
+            }
+            totalLength[column] += other.totalLength[column];
+            emptyValues[column] += other.emptyValues[column];
+        }
+        rows += other.rows;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the estimated number of distinct values of a text column.
+     *
+     * @param column The text column
+     * @return The cardinality estimate, at most the row count
+     */
+    public long getDistinct(int column) {
+        return Math.min(rows, distinct[column].estimate());
+    }
+
+    /**
+     * Returns the length below which the given percentage of a column's values fall.
+     *
+     * @param column The text column
+     * @param percentile The percentile, between 0 and 100
+     * @return The length; lengths above {@value #MAX_TRACKED_LENGTH} are reported as that value
+     */
+    public int getLengthAtPercentile(int column, double percentile) {
+        long target = (long) Math.ceil(rows * percentile / 100.0);
+        long seen = 0;
+        for (int length = 0; length <= MAX_TRACKED_LENGTH; length++) {
+            seen += lengthCounts[column][length];
+            if (seen >= Math.max(1, target)) {
+                return length;
+            }
+        }
+        return MAX_TRACKED_LENGTH;
+    }
+
+    /**
+     * Formats a report with one line per column.
+     *
+     * @return The report
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Column statistics over %,d rows (distinct counts are estimates, error ~%.1f%%)%n",
+                rows, ids.getStandardError() * 100));
+        report.append(String.format("%-12s %12s %12s %8s %8s %6s %6s %6s %6s %8s%n",
+                "column", "distinct", "duplicates", "dup %", "empty", "min", "p50", "p99", "max", "mean"));
+        long idDistinct = Math.min(rows, ids.estimate());
+        report.append(String.format("%-12s %,12d %12s %8s %8s %6s %6s %6s %6s %8s%n",
+                "id", idDistinct, duplicates(idDistinct), duplicatePercent(idDistinct), "-", "-", "-", "-", "-", "-"));
+        for (int column = 0; column < textColumns; column++) {
+            long columnDistinct = getDistinct(column);
+            String name = column < TEXT_COLUMN_NAMES.length ? TEXT_COLUMN_NAMES[column] : "text" + column;
+            report.append(String.format("%-12s %,12d %12s %8s %,8d %6d %6d %6d %6s %8.1f%n",
+                    name, columnDistinct, duplicates(columnDistinct), duplicatePercent(columnDistinct),
+                    emptyValues[column],
+                    getLengthAtPercentile(column, 0), getLengthAtPercentile(column, 50),
+                    getLengthAtPercentile(column, 99), maxLength(column),
+                    rows == 0 ? 0.0 : (double) totalLength[column] / rows));
+        }
+        return report.toString();
+    }
+
+    private boolean withinError(long distinctCount) {
+        return rows - distinctCount <= 2 * ids.getStandardError() * rows;
+    }
+
+    private String duplicates(long distinctCount) {
+        return withinError(distinctCount) ? "~0" : String.format("%,d", rows - distinctCount);
+    }
+
+    private String duplicatePercent(long distinctCount) {
+        return withinError(distinctCount) ? "~0" : String.format("%.2f%%", (rows - distinctCount) * 100.0 / rows);
+    }
+
+    private String maxLength(int column) {
+        for (int length = MAX_TRACKED_LENGTH; length >= 0; length--) {
+            if (lengthCounts[column][length] > 0) {
+                return length == MAX_TRACKED_LENGTH ? ">=" + MAX_TRACKED_LENGTH : String.valueOf(length);
+            }
+        }
+        return "-";
+    }
+}
@@ -0,0 +1,349 @@
+package com.datagenerator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Hands out id ranges to {@link Worker} processes so generation can be spread over
+ * several JVMs and machines.
+ *
+ * <p>The protocol is line based over TCP. Every worker thread opens its own session:</p>
+ * <pre>
+ *   worker: HELLO &lt;name&gt;
+ *   coord:  RANGE &lt;start&gt; &lt;end&gt;       (end exclusive)
+ *   worker: LEASE &lt;nextId&gt;             (batch inserted, may it commit?)
+ *   coord:  GRANTED
+ *   worker: PROGRESS &lt;nextId&gt;          (after each committed batch)
+ *   worker: COMPLETE &lt;end&gt;             (asks for the next range)
+ *   worker: FAILED &lt;nextId&gt;            (rows refused, batch rolled back; asks for the next range)
+ *   coord:  DONE                         (no ranges left)
+ * </pre>
+ *
+ * <p>When a session drops or stays silent longer than the heartbeat timeout, the
+ * uncommitted rest of its range goes back to the queue and is handed to the next
+ * worker that asks. Workers resume a range after the highest id already in the table,
+ * so rows committed just before a worker died are not inserted twice.</p>
+ *
+ * <p>Commits are fenced: a worker only commits a batch after the coordinator has
+ * answered its {@code LEASE} with {@code GRANTED}. A worker that was merely slow and
+ * whose range has been reassigned finds its session closed, gets no answer, and rolls
+ * back. A session that times out between granting a commit and hearing its
+ * {@code PROGRESS} keeps its range until the worker reports or its connection closes,
+ * since the commit may still land.</p>
+ *
+ * <p>Every time a range comes back unfinished, through {@code FAILED} or a lost
+ * session, without any progress since it was handed out, its attempt count grows. A
+ * range that has failed {@code maxAttempts} times in a row is reported as failed and
+ * no longer handed out, so one range the database keeps refusing cannot stall the
+ * run or use up every worker session.</p>
+ */
+public class Coordinator {
+    static final String HELLO = "HELLO";
+    static final String RANGE = "RANGE";
+    static final String LEASE = "LEASE";
+    static final String GRANTED = "GRANTED";
+    static final String PROGRESS = "PROGRESS";
+    static final String COMPLETE = "COMPLETE";
+    static final String FAILED = "FAILED";
+    static final String DONE = "DONE";
+
+    // Ranges are {start, end, failed attempts}
+    private final ArrayDeque<long[]> pendingRanges = new ArrayDeque<>();
+    private final List<long[]> failedRanges = new ArrayList<>();
+    private final Map<String, Long> rowsByWorker = new TreeMap<>();
+    private final long totalRecords;
+    private final int heartbeatTimeoutMillis;
+    private final int maxAttempts;
+    private long completedRows;
+    private long failedRows;
+    private int activeSessions;
+
+    /**
+     * Constructs a coordinator for the ids {@code firstId} to {@code firstId + totalRecords - 1}.
+     *
+     * @param firstId The first id to generate
+     * @param totalRecords The number of rows to generate
+     * @param rangeSize The number of ids handed out at once
+     * @param heartbeatTimeoutMillis How long a session may stay silent before its range is reassigned
+     * @param maxAttempts How often a range may fail without progress before it is given up
+     */
+    public Coordinator(long firstId, long totalRecords, long rangeSize, int heartbeatTimeoutMillis,
+                       int maxAttempts) {
+        this.totalRecords = totalRecords;
+        this.heartbeatTimeoutMillis = heartbeatTimeoutMillis;
+        this.maxAttempts = maxAttempts;
+        long end = firstId + totalRecords;
+        for (long start = firstId; start < end; start += rangeSize) {
+            pendingRanges.add(new long[]{start, Math.min(start + rangeSize, end), 0});
+        }
+    }
+
+    /**
+     * Starts the coordinator. Reads {@code dist.*} settings from {@code application.properties},
+     * optionally overridden by a properties file given as the first argument.
+     *
+     * @param args {@code [propertiesFile]}
+     */
+    public static void main(String[] args) {
+        Properties properties = AppProperties.load(args.length > 0 ? args[0] : null);
+        if (properties == null) {
+            return;
+        }
+        int port = Integer.parseInt(properties.getProperty("dist.port", "9450"));
+        long totalRecords = Long.parseLong(properties.getProperty("dist.totalRecords", "10000000"));
+        long rangeSize = Long.parseLong(properties.getProperty("dist.rangeSize", "100000"));
+        int heartbeatTimeout = Integer.parseInt(properties.getProperty("dist.heartbeatTimeoutSeconds", "120")) * 1000;
+        int maxAttempts = Integer.parseInt(properties.getProperty("dist.maxAttempts", "3"));
+        String table = properties.getProperty("dist.table", "try_tb");
+
+        long firstId;
+        try (Connection conn = DriverManager.getConnection(properties.getProperty("db.url"),
+                properties.getProperty("db.user"), properties.getProperty("db.password"))) {
+            JdbcSink.createTable(conn, table);
+            firstId = JdbcSink.nextId(conn, table);
+        } catch (SQLException e) {
+            System.out.println("Database connection error: " + e.getMessage());
+            return;
+        }
+
+        Coordinator coordinator = new Coordinator(firstId, totalRecords, rangeSize, heartbeatTimeout, maxAttempts);
+        try {
+            coordinator.serve(port);
+        } catch (IOException e) {
+            System.out.println("Coordinator error: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Accepts worker sessions on the port until every range is committed or given up.
+     *
+     * @param port The TCP port to listen on
+     * @throws IOException If the port cannot be opened
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public void serve(int port) throws IOException, InterruptedException {
+        long startTime = System.currentTimeMillis();
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            Thread acceptor = new Thread(() -> acceptSessions(serverSocket), "Coordinator-Acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            System.out.printf("Coordinator listening on port %d, %d ranges to assign%n",
+                    port, pendingRanges.size());
+
+            synchronized (this) {
+                while (completedRows + failedRows < totalRecords) {
+                    wait(5000);
+                    double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+                    System.out.printf("Coordinator: %,d of %,d rows committed (%.0f rows/sec)%n",
+                            completedRows, totalRecords, completedRows / seconds);
+                }
+                // Wake idle sessions and give them a moment to tell their workers to stop
+                notifyAll();
+                long deadline = System.currentTimeMillis() + 5000;
+                while (activeSessions > 0 && System.currentTimeMillis() < deadline) {
+                    wait(100);
+                }
+            }
+        }
+
+        double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+        synchronized (this) {
+            if (failedRanges.isEmpty()) {
+                System.out.printf("All %,d rows committed in %.2f seconds%n", totalRecords, seconds);
+            } else {
+                System.out.printf("%,d rows committed in %.2f seconds, %,d rows in %d ranges FAILED:%n",
+                        completedRows, seconds, failedRows, failedRanges.size());
+                for (long[] range : failedRanges) {
+                    System.out.printf("  ids %d to %d%n", range[0], range[1] - 1);
+                }
+            }
+            for (Map.Entry<String, Long> entry : rowsByWorker.entrySet()) {
+                System.out.printf("  %s: %,d rows%n", entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void acceptSessions(ServerSocket serverSocket) {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread session = new Thread(() -> handleSession(socket), "Coordinator-Session");
+                session.setDaemon(true);
+                session.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.out.println("Error accepting worker: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handleSession(Socket socket) {
+        String worker = socket.getRemoteSocketAddress().toString();
+        long[] current = null;
+        long nextId = 0;
+        sessionStarted(1);
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            socket.setSoTimeout(heartbeatTimeoutMillis);
+            socket.setKeepAlive(true);
+            String[] hello = readMessage(in);
+            if (!HELLO.equals(hello[0]) || hello.length < 2) {
+                return;
+            }
+            worker = hello[1];
+
+            while ((current = nextRange()) != null) {
+                nextId = current[0];
+                out.println(RANGE + " " + current[0] + " " + current[1]);
+                boolean commitGranted = false;
+                while (true) {
+                    String[] message = awaitMessage(in, worker, commitGranted);
+                    if (LEASE.equals(message[0])) {
+                        out.println(GRANTED);
+                        commitGranted = true;
+                        continue;
+                    }
+                    commitGranted = false;
+                    long reported = Long.parseLong(message[1]);
+                    recordProgress(worker, reported - nextId);
+                    nextId = reported;
+                    if (COMPLETE.equals(message[0])) {
+                        break;
+                    }
+                    if (FAILED.equals(message[0])) {
+                        System.out.printf("Worker %s could not insert ids from %d%n", worker, nextId);
+                        giveBack(current, nextId, worker);
+                        break;
+                    }
+                }
+                current = null;
+            }
+            out.println(DONE);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Lost worker " + worker + ": " + e.getMessage());
+        } finally {
+            if (current != null) {
+                giveBack(current, nextId, worker);
+            }
+            sessionStarted(-1);
+        }
+    }
+
+    private synchronized void sessionStarted(int delta) {
+        activeSessions += delta;
+        notifyAll();
+    }
+
+    /**
+     * Reads the next message. Once a commit has been granted, a heartbeat timeout does
+     * not end the session: the range is held until the worker reports or disconnects.
+     */
+    private static String[] awaitMessage(BufferedReader in, String worker, boolean commitGranted)
+            throws IOException {
+        while (true) {
+            try {
+                return readMessage(in);
+            } catch (SocketTimeoutException e) {
+                if (!commitGranted) {
+                    throw e;
+                }
+                System.out.printf("Worker %s is silent after a granted commit; "
+                        + "holding its range until it reports or disconnects%n", worker);
+            }
+        }
+    }
+
+    private static String[] readMessage(BufferedReader in) throws IOException {
+        String line = in.readLine();
+        if (line == null) {
+            throw new IOException("connection closed");
+        }
+        return line.trim().split(" ");
+    }
+
+    /**
+     * Returns the ranges given up after {@code maxAttempts} failures.
+     *
+     * @return The failed ranges as {@code {start, end}}, end exclusive
+     */
+    public synchronized List<long[]> getFailedRanges() {
+        List<long[]> result = new ArrayList<>();
+        for (long[] range : failedRanges) {
+            result.add(new long[]{range[0], range[1]});
+        }
+        return result;
+    }
+
+    /**
+     * Returns the next range to assign, waiting while other sessions still hold
+     * uncommitted ranges that might come back.
+     *
+     * @return The next range, or {@code null} once every range is committed or given up
+     */
+    private synchronized long[] nextRange() throws IOException {
+        while (pendingRanges.isEmpty()) {
+            if (completedRows + failedRows >= totalRecords) {
+                return null;
+            }
+            try {
+                wait(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted");
+            }
+        }
+        return pendingRanges.removeFirst();
+    }
+
+    /**
+     * Takes back the uncommitted rest of a range whose session failed or ended. It is
+     * handed out again first, unless it has now failed {@code maxAttempts} times
+     * without progress.
+     */
+    private synchronized void giveBack(long[] range, long nextId, String worker) {
+        if (nextId >= range[1]) {
+            return;
+        }
+        // Progress means the failure is at a new id, which starts its own count
+        long attempts = (nextId == range[0] ? range[2] : 0) + 1;
+        long[] rest = {nextId, range[1], attempts};
+        if (attempts >= maxAttempts) {
+            failedRanges.add(rest);
+            failedRows += rest[1] - rest[0];
+            System.out.printf("Giving up on ids %d to %d after %d failed attempts, the last by %s%n",
+                    rest[0], rest[1] - 1, attempts, worker);
+        } else {
+            pendingRanges.addFirst(rest);
+            System.out.printf("Reassigning ids %d to %d from %s (attempt %d failed)%n",
+                    rest[0], rest[1] - 1, worker, attempts);
+        }
+        notifyAll();
+    }
+
+    private synchronized void recordProgress(String worker, long rows) {
+        completedRows += rows;
+        rowsByWorker.merge(worker, rows, Long::sum);
+        if (completedRows + failedRows >= totalRecords) {
+            notifyAll();
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.datagenerator;
 
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.util.concurrent.CountDownLatch;
 
 import com.github.javafaker.Faker;
@@ -12,6 +16,7 @@ import com.github.javafaker.Faker;
  * Generates the same type of fake data as database insertion but writes to CSV file.
  */
 public class CsvExporter implements Runnable {
+    private static final String COMPONENT = "CsvExporter";
     private static final Object WRITE_LOCK = new Object();
     private static volatile boolean headerWritten = false;
     private final String filePath;
@@ -33,7 +38,8 @@ public class CsvExporter implements Runnable {
     public void run() {
         try {
             Faker faker = new Faker();
-            StringBuilder batch = new StringBuilder();
+            RowBatch batch = new RowBatch(batchSize, 3);
+            CsvRowEncoder encoder = new CsvRowEncoder(false, false);
 
             // Write header if first thread
             synchronized(WRITE_LOCK) {
@@ -45,38 +51,34 @@ public class CsvExporter implements Runnable {
                 }
             }
 
+            JfrEvents.Generate generate = null;
             for (long i = 0; i < recordsToGenerate; i++) {  
-                String line = String.format("%s,%s,%s%n",
-                        faker.name().firstName(),
-                        faker.name().lastName(),
-                        faker.internet().emailAddress());
-
-                batch.append(line);
+                if (batch.isEmpty()) {
+                    generate = new JfrEvents.Generate();
+                    generate.begin();
+                }
+                batch.addRow(i);
+                batch.addText(faker.name().firstName());
+                batch.addText(faker.name().lastName());
+                batch.addText(faker.internet().emailAddress());
 
                 if ((i + 1) % batchSize == 0) {
-                    // Synchronized batch write
-                    synchronized(WRITE_LOCK) {
-                        try (PrintWriter writer = new PrintWriter(new FileWriter(filePath, true))) {
-                            writer.write(batch.toString());
-                        }
-                        // Add progress percentage
-                        double progress = (i + 1.0) / recordsToGenerate * 100;
-                        System.out.printf("CSV Thread %d: %.2f%% complete%n",
-                                threadId, progress);
-                    }
-                    batch.setLength(0);
+                    JfrEvents.finish(generate, COMPONENT, threadId, batch.size());
+                    appendBatch(batch, encoder);
+                    // Add progress percentage
+                    double progress = (i + 1.0) / recordsToGenerate * 100;
+                    System.out.printf("CSV Thread %d: %.2f%% complete%n",
+                            threadId, progress);
+                    batch.clear();
                     System.out.printf("CSV Export Thread %d: Processed %d records%n",
                             threadId, i + 1);
                 }
             }
 
             // Write remaining records
-            if (batch.length() > 0) {
-                synchronized(WRITE_LOCK) {
-                    try (PrintWriter writer = new PrintWriter(new FileWriter(filePath, true))) {
-                        writer.write(batch.toString());
-                    }
-                }
+            if (!batch.isEmpty()) {
+                JfrEvents.finish(generate, COMPONENT, threadId, batch.size());
+                appendBatch(batch, encoder);
             }
 
         } catch (IOException e) {
@@ -85,4 +87,26 @@ public class CsvExporter implements Runnable {
             completionLatch.countDown();
         }
     }
+
+    /**
+     * Appends a batch to the file under {@link #WRITE_LOCK}, recording the wait for
+     * the lock and the write as separate events.
+     */
+    private void appendBatch(RowBatch batch, CsvRowEncoder encoder) throws IOException {
+        JfrEvents.LockWait wait = new JfrEvents.LockWait();
+        wait.lock = "CsvExporter.WRITE_LOCK";
+        wait.begin();
+        synchronized(WRITE_LOCK) {
+            JfrEvents.finish(wait, COMPONENT, threadId, batch.size());
+            JfrEvents.FileWrite write = new JfrEvents.FileWrite();
+            write.begin();
+            CountingOutputStream counter = new CountingOutputStream(new FileOutputStream(filePath, true));
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(counter))) {
+                encoder.encode(batch, writer);
+            }
+            write.path = filePath;
+            write.bytes = counter.getCount();
+            JfrEvents.finish(write, COMPONENT, threadId, batch.size());
+        }
+    }
 }
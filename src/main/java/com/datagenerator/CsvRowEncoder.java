@@ -0,0 +1,130 @@
+package com.datagenerator;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Encodes rows of a {@link RowBatch} as CSV lines straight from its column storage.
+ *
+ * <p>A line is the id (optional), then every text field, then the integer column
+ * (optional). Numbers are formatted into a scratch buffer owned by the encoder, so
+ * encoding allocates nothing. An encoder is not thread-safe; give each writer thread
+ * its own.</p>
+ */
+public class CsvRowEncoder {
+    /** Quote character meaning "never quote", as with {@code CSVWriter.NO_QUOTE_CHARACTER}. */
+    public static final char NO_QUOTE = '\u0000';
+
+    private final boolean includeId;
+    private final boolean includeInt;
+    private final char quote;
+    private final char[] digits = new char[20];
+
+    /**
+     * Constructs an encoder that writes unquoted fields.
+     *
+     * @param includeId Whether each line starts with the row id
+     * @param includeInt Whether each line ends with the integer column
+     */
+    public CsvRowEncoder(boolean includeId, boolean includeInt) {
+        this(includeId, includeInt, NO_QUOTE);
+    }
+
+    /**
+     * Constructs an encoder.
+     *
+     * @param includeId Whether each line starts with the row id
+     * @param includeInt Whether each line ends with the integer column
+     * @param quote The character every field is wrapped in, or {@link #NO_QUOTE}
+     */
+    public CsvRowEncoder(boolean includeId, boolean includeInt, char quote) {
+        this.includeId = includeId;
+        this.includeInt = includeInt;
+        this.quote = quote;
+    }
+
+    /**
+     * Writes every row of a batch.
+     *
+     * @param batch The batch to encode
+     * @param writer The destination
+     * @throws IOException If writing fails
+     */
+    public void encode(RowBatch batch, Writer writer) throws IOException {
+        for (int row = 0; row < batch.size(); row++) {
+            encodeRow(batch, row, writer);
+        }
+    }
+
+    /**
+     * Writes one row as a CSV line including the line terminator.
+     *
+     * @param batch The batch holding the row
+     * @param row The row index
+     * @param writer The destination
+     * @throws IOException If writing fails
+     */
+    public void encodeRow(RowBatch batch, int row, Writer writer) throws IOException {
+        boolean first = true;
+        if (includeId) {
+            writeNumber(batch.getId(row), writer);
+            first = false;
+        }
+        char[] chars = batch.getChars();
+        for (int column = 0; column < batch.getTextColumns(); column++) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            writeText(chars, batch.getTextStart(row, column), batch.getTextLength(row, column), writer);
+        }
+        if (includeInt) {
+            if (!first) {
+                writer.write(',');
+            }
+            writeNumber(batch.getInt(row), writer);
+        }
+        writer.write('\n');
+    }
+
+    private void writeText(char[] chars, int start, int length, Writer writer) throws IOException {
+        if (quote == NO_QUOTE) {
+            writer.write(chars, start, length);
+            return;
+        }
+        writer.write(quote);
+        int runStart = start;
+        for (int i = start; i < start + length; i++) {
+            if (chars[i] == quote) {
+                // Escape an embedded quote by doubling it
+                writer.write(chars, runStart, i - runStart + 1);
+                runStart = i;
+            }
+        }
+        writer.write(chars, runStart, start + length - runStart);
+        writer.write(quote);
+    }
+
+    private void writeNumber(long value, Writer writer) throws IOException {
+        if (quote != NO_QUOTE) {
+            writer.write(quote);
+        }
+        if (value == Long.MIN_VALUE) {
+            writer.write(Long.toString(value));
+        } else {
+            long remaining = Math.abs(value);
+            int pos = digits.length;
+            do {
+                digits[--pos] = (char) ('0' + remaining % 10);
+                remaining /= 10;
+            } while (remaining != 0);
+            if (value < 0) {
+                digits[--pos] = '-';
+            }
+            writer.write(digits, pos, digits.length - pos);
+        }
+        if (quote != NO_QUOTE) {
+            writer.write(quote);
+        }
+    }
+}
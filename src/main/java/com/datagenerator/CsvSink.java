@@ -0,0 +1,33 @@
+package com.datagenerator;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes generated rows to a CSV file in the {@code id,first_name,last_name,email}
+ * layout that {@link CsvToDatabaseImporter} reads back.
+ * The file is truncated and the header written when the sink is created.
+ */
+public class CsvSink implements RecordSink {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Writer writer;
+    private final CsvRowEncoder encoder = new CsvRowEncoder(true, false);
+
+    public CsvSink(String filePath) throws IOException {
+        this.writer = new BufferedWriter(new FileWriter(filePath), BUFFER_SIZE);
+        writer.write("id,first_name,last_name,email\n");
+    }
+
+    @Override
+    public void write(RowBatch batch) throws IOException {
+        encoder.encode(batch, writer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -1,80 +1,423 @@
 package com.datagenerator;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import jdk.jfr.Recording;
+
+/**
+ * Loads a person CSV file into a table in batches.
+ * Rows the database refuses, for example duplicate ids or over-long values, are
+ * isolated by {@link BatchBisector} and written to a reject file, and the import
+ * carries on with the next batch.
+ *
+ * <p>With {@link #enableUpsert} the file is first bulk-loaded into a session-private
+ * temporary staging table, then merged into the target with one set-based
+ * {@code INSERT ... SELECT ... ON DUPLICATE KEY UPDATE} per id-range chunk, committed
+ * chunk by chunk. Existing rows are overwritten, so a corrected file can be re-imported
+ * at close to the speed of a fresh load. Databases other than MySQL get the standard
+ * {@code MERGE ... KEY (id)} instead.</p>
+ *
+ * <p>{@link #importManifest} loads all shards listed in a {@link RollingCsvSink}
+ * manifest concurrently, one connection per thread.</p>
+ */
 public class CsvToDatabaseImporter implements Runnable {
+    private static final String COMPONENT = "CsvToDatabaseImporter";
     private final String csvFilePath;
     private final Connection connection;
     private final String tableName;
     private final int batchSize;
+    private final RejectFile rejects;
+    private final boolean ownsRejects;
+    private long upsertChunkIds;
+    private long rowsInserted;
+    private long rowsRejected;
 
+    /**
+     * Imports with rejected rows going to {@code <csvFilePath>.rejects}.
+     */
     public CsvToDatabaseImporter(String csvFilePath, Connection connection, String tableName, int batchSize) {
+        this(csvFilePath, connection, tableName, batchSize, new RejectFile(csvFilePath + ".rejects"), true);
+    }
+
+    public CsvToDatabaseImporter(String csvFilePath, Connection connection, String tableName, int batchSize,
+                                 RejectFile rejects) {
+        this(csvFilePath, connection, tableName, batchSize, rejects, false);
+    }
+
+    private CsvToDatabaseImporter(String csvFilePath, Connection connection, String tableName, int batchSize,
+                                  RejectFile rejects, boolean ownsRejects) {
         this.csvFilePath = csvFilePath;
         this.connection = connection;
         this.tableName = tableName;
         this.batchSize = batchSize;
+        this.rejects = rejects;
+        this.ownsRejects = ownsRejects;
+    }
+
+    /**
+     * Imports a CSV file into the {@code import.table} of {@code application.properties}.
+     *
+     * A file ending in {@code .manifest.csv} is treated as a shard manifest.
+     *
+     * @param args {@code <csvFile|manifest> [insert|upsert]}
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: CsvToDatabaseImporter <csvFile|manifest> [insert|upsert]");
+            return;
+        }
+        Properties properties = AppProperties.load(null);
+        if (properties == null) {
+            return;
+        }
+        Recording recording = FlightRecording.start(properties);
+        try {
+            runImport(args, properties);
+        } finally {
+            FlightRecording.stop(recording);
+        }
+    }
+
+    private static void runImport(String[] args, Properties properties) {
+        String tableName = properties.getProperty("import.table", "try_tb");
+        int batchSize = Integer.parseInt(properties.getProperty("import.batchSize", "5000"));
+        long upsertChunkIds = args.length > 1 && args[1].equalsIgnoreCase("upsert")
+                ? Long.parseLong(properties.getProperty("import.upsert.chunkIds", "50000")) : 0;
+        if (args[0].endsWith(RollingCsvSink.MANIFEST_SUFFIX)) {
+            int threads = Integer.parseInt(properties.getProperty("import.threads",
+                    String.valueOf(Runtime.getRuntime().availableProcessors())));
+            try {
+                importManifest(args[0], properties, tableName, batchSize, threads, upsertChunkIds);
+            } catch (IOException e) {
+                System.err.println("Error reading manifest: " + e.getMessage());
+            } catch (SQLException e) {
+                System.err.println("Database error: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        try (Connection connection = DriverManager.getConnection(properties.getProperty("db.url"),
+                properties.getProperty("db.user"), properties.getProperty("db.password"))) {
+            JdbcSink.createTable(connection, tableName);
+            CsvToDatabaseImporter importer = new CsvToDatabaseImporter(args[0], connection, tableName, batchSize);
+            if (upsertChunkIds > 0) {
+                importer.enableUpsert(upsertChunkIds);
+            }
+            importer.run();
+        } catch (SQLException e) {
+            System.err.println("Database error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads every shard listed in a manifest, {@code threads} shards at a time, each on
+     * its own connection. Rejected rows of all shards go to {@code <manifest>.rejects}.
+     *
+     * @param manifestPath The manifest written by {@link RollingCsvSink}
+     * @param properties Settings holding {@code db.url}, {@code db.user} and {@code db.password}
+     * @param tableName The target table
+     * @param batchSize The rows per insert batch
+     * @param threads The number of shards loaded at once
+     * @param upsertChunkIds The upsert chunk width, or 0 for plain inserts
+     * @throws IOException If the manifest cannot be read
+     * @throws SQLException If the target table cannot be created
+     * @throws InterruptedException If interrupted while waiting for the shards
+     */
+    public static void importManifest(String manifestPath, Properties properties, String tableName,
+                                      int batchSize, int threads, long upsertChunkIds)
+            throws IOException, SQLException, InterruptedException {
+        File manifest = new File(manifestPath);
+        List<String[]> shards = new ArrayList<>();
+        long expectedRows = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(manifest))) {
+            br.readLine();
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    String[] values = line.split(",");
+                    shards.add(values);
+                    expectedRows += Long.parseLong(values[1]);
+                }
+            }
+        }
+
+        String url = properties.getProperty("db.url");
+        String user = properties.getProperty("db.user");
+        String password = properties.getProperty("db.password");
+        try (Connection connection = DriverManager.getConnection(url, user, password)) {
+            JdbcSink.createTable(connection, tableName);
+        }
+
+        System.out.printf("Importing %d shards (%,d rows) from %s on %d threads%n",
+                shards.size(), expectedRows, manifestPath, threads);
+        long start = System.nanoTime();
+        AtomicLong inserted = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (RejectFile rejects = new RejectFile(manifestPath + ".rejects")) {
+            for (String[] shard : shards) {
+                String shardPath = new File(manifest.getAbsoluteFile().getParentFile(), shard[0]).getPath();
+                executor.submit(() -> {
+                    try (Connection connection = DriverManager.getConnection(url, user, password)) {
+                        CsvToDatabaseImporter importer = new CsvToDatabaseImporter(shardPath, connection,
+                                tableName, batchSize, rejects);
+                        if (upsertChunkIds > 0) {
+                            importer.enableUpsert(upsertChunkIds);
+                        }
+                        importer.run();
+                        inserted.addAndGet(importer.getRowsInserted());
+                        rejected.addAndGet(importer.getRowsRejected());
+                    } catch (SQLException e) {
+                        System.err.println("Error importing " + shardPath + ": " + e.getMessage());
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        System.out.printf("Imported %,d of %,d rows (%,d rejected) in %.2f seconds%n",
+                inserted.get(), expectedRows, rejected.get(), (System.nanoTime() - start) / 1e9);
+        if (inserted.get() + rejected.get() != expectedRows) {
+            System.out.println("Warning: some shards were not fully imported");
+        }
+    }
+
+    public long getRowsInserted() {
+        return rowsInserted;
+    }
+
+    public long getRowsRejected() {
+        return rowsRejected;
+    }
+
+    /**
+     * Switches to upsert mode: load into a staging table, then merge into the target.
+     *
+     * @param chunkIds The width of the id range merged and committed at a time
+     */
+    public void enableUpsert(long chunkIds) {
+        if (chunkIds <= 0) {
+            throw new IllegalArgumentException("Upsert chunk must be positive: " + chunkIds);
+        }
+        this.upsertChunkIds = chunkIds;
     }
 
     @Override
     public void run() {
-        String insertQuery = String.format("INSERT INTO %s (id, first_name, last_name, email) VALUES (?, ?, ?, ?)", tableName);
+        boolean upsert = upsertChunkIds > 0;
+        String loadTable = upsert ? tableName + "_staging" : tableName;
+        String insertQuery = String.format("INSERT INTO %s (id, first_name, last_name, email) VALUES (?, ?, ?, ?)", loadTable);
 
-        try (BufferedReader br = new BufferedReader(new FileReader(csvFilePath));
-             PreparedStatement pstmt = connection.prepareStatement(insertQuery)) {
+        try (BufferedReader br = new BufferedReader(new FileReader(csvFilePath))) {
+            connection.setAutoCommit(false);
+            if (upsert) {
+                createStagingTable(loadTable);
+            }
+            try (PreparedStatement pstmt = connection.prepareStatement(insertQuery)) {
+                BatchBisector bisector = new BatchBisector(pstmt, CsvToDatabaseImporter::bindRow, rejects);
+                bisector.setEventSource(COMPONENT, -1);
+                JfrEvents.FileRead read = null;
+                RowBatch batch = new RowBatch(batchSize, 3);
+                String line;
+                long count = 0;
+                long rejected = 0;
 
-            String line;
-            int count = 0;
+                // Skip the header row
+                br.readLine();
 
-            // Skip the header row
-            br.readLine();
+                while ((line = br.readLine()) != null) {
+                    String[] values = line.split(","); // Assuming the CSV is comma-separated
 
-            while ((line = br.readLine()) != null) {
-                String[] values = line.split(","); // Assuming the CSV is comma-separated
+                    // Ensure the line has the correct number of columns
+                    if (values.length < 4) {
+                        System.err.println("Skipping malformed row: " + line);
+                        continue;
+                    }
 
-                // Ensure the line has the correct number of columns
-                if (values.length < 4) {
-                    System.err.println("Skipping malformed row: " + line);
-                    continue;
-                }
+                    // Map values from the CSV to the columns in the database
+                    long id;
+                    try {
+                        id = Long.parseLong(values[0].trim());
+                    } catch (NumberFormatException e) {
+                        System.err.println("Skipping row due to invalid id value: " + values[0]);
+                        continue;
+                    }
 
-                // Map values from the CSV to the columns in the database
-                try {
-                    pstmt.setInt(1, Integer.parseInt(values[0].trim())); // id
-                } catch (NumberFormatException e) {
-                    System.err.println("Skipping row due to invalid id value: " + values[0]);
-                    continue;
-                }
+                    if (batch.isEmpty()) {
+                        read = new JfrEvents.FileRead();
+                        read.path = csvFilePath;
+                        read.begin();
+                    }
+                    batch.addRow(id);
+                    batch.addText(values[1].trim()); // first_name
+                    batch.addText(values[2].trim()); // last_name
+                    batch.addText(values[3].trim()); // email
 
-                pstmt.setString(2, values[1].trim()); // first_name
-                pstmt.setString(3, values[2].trim()); // last_name
-                pstmt.setString(4, values[3].trim()); // email
+                    // Execute the batch after every 'batchSize' rows
+                    if (batch.isFull()) {
+                        JfrEvents.finish(read, COMPONENT, -1, batch.size());
+                        rejected += bisector.execute(batch);
+                        count += batch.size();
+                        batch.clear();
+                        System.out.println("Processed " + count + " rows (" + rejected + " rejected).");
+                    }
+                }
 
-                pstmt.addBatch(); // Add the operation to a batch
+                // Execute any remaining rows in the batch
+                if (!batch.isEmpty()) {
+                    JfrEvents.finish(read, COMPONENT, -1, batch.size());
+                    rejected += bisector.execute(batch);
+                    count += batch.size();
+                    System.out.println("Processed remaining " + batch.size() + " rows.");
+                }
 
-                // Execute the batch after every 'batchSize' rows
-                if (++count % batchSize == 0) {
-                    pstmt.executeBatch();
-                    System.out.println("Inserted " + count + " rows into the database.");
+                System.out.println("Data imported from " + csvFilePath + " into " + loadTable + ": "
+                        + (count - rejected) + " rows inserted, " + rejected + " rejected");
+                // An upsert counts the rows it merges into the target instead
+                rowsInserted = upsert ? 0 : count - rejected;
+                rowsRejected = rejected;
+                if (rejected > 0) {
+                    System.out.println("Rejected rows written to " + rejects.getPath());
                 }
             }
 
-            // Execute any remaining rows in the batch
-            if (count % batchSize != 0) {
-                pstmt.executeBatch();
-                System.out.println("Inserted remaining " + count % batchSize + " rows into the database.");
+            if (upsert) {
+                mergeStagingTable(loadTable);
             }
-
-            System.out.println("Data imported successfully from " + csvFilePath);
-
         } catch (IOException e) {
             System.err.println("Error reading CSV file: " + e.getMessage());
         } catch (SQLException e) {
             System.err.println("Error inserting data into database: " + e.getMessage());
+        } finally {
+            if (upsert) {
+                dropStagingTable(loadTable);
+            }
+            if (ownsRejects) {
+                try {
+                    rejects.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing reject file: " + e.getMessage());
+                }
+            }
         }
     }
+
+    private void createStagingTable(String stagingTable) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TEMPORARY TABLE " + stagingTable + " (" +
+                "id BIGINT PRIMARY KEY," +
+                "first_name VARCHAR(100)," +
+                "last_name VARCHAR(100)," +
+                "email VARCHAR(150))");
+        }
+        connection.commit();
+    }
+
+    /**
+     * Merges the staging table into the target one id range at a time, so each
+     * transaction stays small and a failure only loses the current chunk.
+     * {@link #getRowsInserted} counts the staged rows of every committed chunk, since
+     * the update count of {@code ON DUPLICATE KEY UPDATE} is 2 for an updated row and
+     * 0 or 1 for an unchanged one.
+     */
+    private void mergeStagingTable(String stagingTable) throws SQLException {
+        long minId;
+        long maxId;
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(id), MAX(id) FROM " + stagingTable)) {
+            rs.next();
+            minId = rs.getLong(1);
+            maxId = rs.getLong(2);
+            if (rs.wasNull()) {
+                System.out.println("Nothing to merge into " + tableName);
+                return;
+            }
+        }
+
+        String mergeQuery;
+        if (isMySql()) {
+            // Refers to the staged values through the derived table's alias; VALUES(col) is deprecated
+            mergeQuery = "INSERT INTO " + tableName + " (id, first_name, last_name, email) " +
+                "SELECT * FROM (SELECT id, first_name, last_name, email FROM " + stagingTable +
+                " WHERE id >= ? AND id < ?) AS new " +
+                "ON DUPLICATE KEY UPDATE first_name = new.first_name, last_name = new.last_name, " +
+                "email = new.email";
+        } else {
+            mergeQuery = "MERGE INTO " + tableName + " (id, first_name, last_name, email) KEY (id) " +
+                "SELECT id, first_name, last_name, email FROM " + stagingTable + " WHERE id >= ? AND id < ?";
+        }
+        String countQuery = "SELECT COUNT(*) FROM " + stagingTable + " WHERE id >= ? AND id < ?";
+        long start = System.nanoTime();
+        long affected = 0;
+        try (PreparedStatement merge = connection.prepareStatement(mergeQuery);
+             PreparedStatement countChunk = connection.prepareStatement(countQuery)) {
+            for (long from = minId; from <= maxId; from += upsertChunkIds) {
+                long to = Math.min(maxId + 1, from + upsertChunkIds);
+                countChunk.setLong(1, from);
+                countChunk.setLong(2, to);
+                long chunkRows;
+                try (ResultSet rs = countChunk.executeQuery()) {
+                    rs.next();
+                    chunkRows = rs.getLong(1);
+                }
+                if (chunkRows == 0) {
+                    continue;
+                }
+                merge.setLong(1, from);
+                merge.setLong(2, to);
+                affected += merge.executeUpdate();
+                connection.commit();
+                rowsInserted += chunkRows;
+            }
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+        System.out.printf("Merged %s into %s in %.2f seconds (%d rows merged, %d affected)%n",
+                stagingTable, tableName, (System.nanoTime() - start) / 1e9, rowsInserted, affected);
+    }
+
+    private void dropStagingTable(String stagingTable) {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute((isMySql() ? "DROP TEMPORARY TABLE IF EXISTS " : "DROP TABLE IF EXISTS ") + stagingTable);
+            connection.commit();
+        } catch (SQLException e) {
+            System.err.println("Error dropping staging table: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Tells whether the connection talks to MySQL, whose merge and drop syntax differs
+     * from the standard one.
+     */
+    private boolean isMySql() throws SQLException {
+        return connection.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+    }
+
+    private static void bindRow(PreparedStatement pstmt, RowBatch batch, int row) throws SQLException {
+        pstmt.setLong(1, batch.getId(row)); // id
+        pstmt.setString(2, batch.getText(row, 0)); // first_name
+        pstmt.setString(3, batch.getText(row, 1)); // last_name
+        pstmt.setString(4, batch.getText(row, 2)); // email
+    }
 }
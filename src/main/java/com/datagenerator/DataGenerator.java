@@ -1,5 +1,6 @@
 package com.datagenerator;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
@@ -26,6 +27,7 @@ public class DataGenerator implements Runnable {
     private final AtomicLong totalRecordsInserted;
     private final long maxRecords;         // Changed to long
     private final CountDownLatch completionLatch;
+    private final RejectFile rejects;
     
     /**
      * Constructs a new DataGenerator with specified parameters.
@@ -37,10 +39,11 @@ public class DataGenerator implements Runnable {
      * @param totalRecordsInserted The shared counter for total records inserted
      * @param maxRecords The maximum number of records to insert
      * @param completionLatch The latch to signal completion
+     * @param rejects The file collecting rows the database refuses
      */
     public DataGenerator(Connection connection, long recordsToGenerate, int batchSize, 
                         int threadId, AtomicLong totalRecordsInserted, long maxRecords,
-                        CountDownLatch completionLatch) {
+                        CountDownLatch completionLatch, RejectFile rejects) {
         this.connection = connection;
         this.recordsToGenerate = recordsToGenerate;
         this.batchSize = batchSize;
@@ -48,12 +51,14 @@ public class DataGenerator implements Runnable {
         this.totalRecordsInserted = totalRecordsInserted;
         this.maxRecords = maxRecords;
         this.completionLatch = completionLatch;
+        this.rejects = rejects;
     }
 
     /**
      * Executes the data generation and insertion process.
      * Generates fake person data using JavaFaker and inserts it into the database
      * in batches. Progress is logged periodically based on the batch size.
+     * Rows refused by the database go to the reject file without stopping the thread.
      *
      * @throws SQLException If a database access error occurs
      */
@@ -92,9 +97,13 @@ public class DataGenerator implements Runnable {
 
             String insertQuery = "INSERT INTO try_tb (first_name, last_name, email) VALUES (?, ?, ?)";
             Faker faker = new Faker();
+            RowBatch batch = new RowBatch(batchSize, 3);
             long lastCount = 0;
             
             try (PreparedStatement preparedStatement = connection.prepareStatement(insertQuery)) {
+            BatchBisector bisector = new BatchBisector(preparedStatement, DataGenerator::bindRow, rejects);
+            bisector.setEventSource("DataGenerator", threadId);
+            JfrEvents.Generate generate = null;
             
             for (long i = 0; i < recordsToGenerate; i++) {  // Changed to long
                 // Check if we've reached total limit
@@ -103,15 +112,20 @@ public class DataGenerator implements Runnable {
                     break;
                 }
 
-                preparedStatement.setString(1, faker.name().firstName());
-                preparedStatement.setString(2, faker.name().lastName());
-                preparedStatement.setString(3, faker.internet().emailAddress());
-                preparedStatement.addBatch();
+                if (batch.isEmpty()) {
+                    generate = new JfrEvents.Generate();
+                    generate.begin();
+                }
+                batch.addRow(i);
+                batch.addText(faker.name().firstName());
+                batch.addText(faker.name().lastName());
+                batch.addText(faker.internet().emailAddress());
                 
                 if ((i + 1) % batchSize == 0) {
-                    preparedStatement.executeBatch();
-                    connection.commit();
-                    totalRecordsInserted.addAndGet(batchSize);
+                    JfrEvents.finish(generate, "DataGenerator", threadId, batch.size());
+                    int inserted = batchSize - bisector.execute(batch);
+                    batch.clear();
+                    totalRecordsInserted.addAndGet(inserted);
                     
                     // Verify data insertion
                     var stmt = connection.createStatement();
@@ -123,9 +137,9 @@ public class DataGenerator implements Runnable {
                             threadId, i + 1, newRecords);
                         lastCount = currentCount;
                         
-                        if (newRecords != batchSize) {
+                        if (newRecords != inserted) {
                             System.out.printf("Warning: Thread %d - Expected %d records but inserted %d%n",
-                                threadId, batchSize, newRecords);
+                                threadId, inserted, newRecords);
                         }
                     }
                     
@@ -143,8 +157,11 @@ public class DataGenerator implements Runnable {
             }
             
             // Process and verify remaining records
-            preparedStatement.executeBatch();
-            connection.commit();
+            if (generate != null && !batch.isEmpty()) {
+                JfrEvents.finish(generate, "DataGenerator", threadId, batch.size());
+            }
+            bisector.execute(batch);
+            batch.clear();
             
             var stmt = connection.createStatement();
             var rs = stmt.executeQuery("SELECT COUNT(*) FROM try_tb");
@@ -158,8 +175,24 @@ public class DataGenerator implements Runnable {
             
         } catch (SQLException e) {
             System.out.println("Error in thread " + threadId + ": " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error writing rejected rows in thread " + threadId + ": " + e.getMessage());
         } finally {
             completionLatch.countDown();
         }
     }
+
+    /**
+     * Binds one generated row to the insert statement.
+     *
+     * @param preparedStatement The insert statement taking first_name, last_name and email
+     * @param batch The generated rows
+     * @param row The row to bind
+     * @throws SQLException If binding fails
+     */
+    private static void bindRow(PreparedStatement preparedStatement, RowBatch batch, int row) throws SQLException {
+        preparedStatement.setString(1, batch.getText(row, 0));
+        preparedStatement.setString(2, batch.getText(row, 1));
+        preparedStatement.setString(3, batch.getText(row, 2));
+    }
 }
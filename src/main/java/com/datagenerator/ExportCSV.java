@@ -1,15 +1,24 @@
 package com.datagenerator;
 
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jdk.jfr.Recording;
 
 import com.opencsv.CSVWriter;
 
@@ -20,14 +29,33 @@ public class ExportCSV {
     private static final String DB_PASSWORD = "root";
     private static final int FETCH_SIZE = 1000000;
     private static final int THREAD_COUNT = 10;
+    private static final int BATCH_SIZE = 1000;
+    private static final int QUEUE_CAPACITY = 16;
+    private static final RowBatch END_OF_STREAM = new RowBatch(0, 0);
+    private static final String COMPONENT = "ExportCSV";
+    private static final String BACKUP_REJECT_HEADER = "id,name,email,address,age,error";
 // ... existing code ...
 
     public static void main(String[] args) {
+        Properties properties = AppProperties.load(null);
+        Recording recording = properties == null ? null : FlightRecording.start(properties);
+        try {
+            export();
+        } finally {
+            FlightRecording.stop(recording);
+        }
+    }
+
+    private static void export() {
         String csvFile = "exportPeople2.csv";
         String backupTable = "people_backup";  // Name of the backup table in the database
-        ExecutorService executorService = Executors.newFixedThreadPool(THREAD_COUNT);
-        ExecutorService backupExecutor = Executors.newFixedThreadPool(THREAD_COUNT);
-        LinkedBlockingQueue<String[]> queue = new LinkedBlockingQueue<>();
+        // Backup workers each insert through their own connection, so one worker's rollback never undoes another's rows
+        QueueBatchChannel backupChannel = new QueueBatchChannel(QUEUE_CAPACITY);
+        RejectFile backupRejects = new RejectFile(backupTable + ".rejects", BACKUP_REJECT_HEADER, true);
+        AtomicBoolean backupFailed = new AtomicBoolean();
+        // Rows travel as pooled column batches: name, email, address as text, age as the int column
+        RowBatchPool batchPool = new RowBatchPool(BATCH_SIZE, 3, QUEUE_CAPACITY + THREAD_COUNT + 2);
+        BlockingQueue<RowBatch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
 
         // Track progress variables
         final long totalRecords = 10000000;  // Estimated total records (you can fetch this value dynamically if needed)
@@ -46,14 +74,27 @@ public class ExportCSV {
 
         // Thread to write to the CSV file
         Thread writerThread = new Thread(() -> {
-            try (CSVWriter csvWriter = new CSVWriter(new FileWriter(csvFile, true))) {
+            // Quote every field like CSVWriter's defaults
+            CsvRowEncoder encoder = new CsvRowEncoder(true, true, '"');
+            CountingOutputStream counter;
+            try (Writer csvWriter = new BufferedWriter(new OutputStreamWriter(
+                    counter = new CountingOutputStream(new FileOutputStream(csvFile, true))))) {
                 while (true) {
-                    String[] data = queue.take();
-                    if (data.length == 0) break; // Exit signal
-                    csvWriter.writeNext(data);
+                    RowBatch batch = queue.take();
+                    if (batch == END_OF_STREAM) break; // Exit signal
+                    // Flushed per batch, so the bytes counted are exactly this batch's
+                    JfrEvents.FileWrite write = new JfrEvents.FileWrite();
+                    long bytesBefore = counter.getCount();
+                    write.begin();
+                    encoder.encode(batch, csvWriter);
+                    csvWriter.flush();
+                    write.path = csvFile;
+                    write.bytes = counter.getCount() - bytesBefore;
+                    JfrEvents.finish(write, COMPONENT, -1, batch.size());
                     synchronized (recordsProcessed) {
-                        recordsProcessed[0]++;
+                        recordsProcessed[0] += batch.size();
                     }
+                    batch.release();
                 }
             } catch (IOException | InterruptedException e) {
                 e.printStackTrace();
@@ -61,6 +102,15 @@ public class ExportCSV {
         });
         writerThread.start();
 
+        List<Thread> backupWorkers = new ArrayList<>();
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            int workerId = i;
+            Thread worker = new Thread(() -> backup(backupChannel, backupTable, backupRejects, backupFailed, workerId),
+                    "Backup-" + i);
+            worker.start();
+            backupWorkers.add(worker);
+        }
+
         // Thread to insert data into the backup table
         try (Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD)) {
             System.out.println("Database connection has been established.");
@@ -108,42 +158,29 @@ public class ExportCSV {
                 preparedStatement.setFetchSize(FETCH_SIZE);
 
                 try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    RowBatch batch = batchPool.acquire();
+                    long nextProgress = 1000000;
+                    JfrEvents.QueryFetch fetch = new JfrEvents.QueryFetch();
+                    fetch.begin();
                     while (resultSet.next()) {
-                        String id = String.valueOf(resultSet.getInt("id"));
-                        String name = resultSet.getString("name");
-                        String email = resultSet.getString("email");
-                        String address = resultSet.getString("address");
-                        String age = String.valueOf(resultSet.getInt("age"));
-
-                        String[] data = new String[]{id, name, email, address, age};
-
-                        // Submit task for writing to CSV
-                        executorService.submit(() -> {
-                            try {
-                                queue.put(data);
-                            } catch (InterruptedException e) {
-                                Thread.currentThread().interrupt();
-                            }
-                        });
-
-                        // Submit task for backup insert
-                        backupExecutor.submit(() -> {
-                            try (PreparedStatement backupInsertStmt = connection.prepareStatement(
-                                    "INSERT INTO " + backupTable + " (id, name, email, address, age) VALUES (?, ?, ?, ?, ?)")) {
-                                backupInsertStmt.setInt(1, Integer.parseInt(id));
-                                backupInsertStmt.setString(2, name);
-                                backupInsertStmt.setString(3, email);
-                                backupInsertStmt.setString(4, address);
-                                backupInsertStmt.setInt(5, Integer.parseInt(age));
-                                backupInsertStmt.executeUpdate();
-                            } catch (SQLException e) {
-                                e.printStackTrace();
-                            }
-                        });
+                        int row = batch.addRow(resultSet.getInt("id"));
+                        batch.addText(resultSet.getString("name"));
+                        batch.addText(resultSet.getString("email"));
+                        batch.addText(resultSet.getString("address"));
+                        batch.setInt(row, resultSet.getInt("age"));
 
-                        // Print progress every 1000 records
+                        if (batch.isFull()) {
+                            JfrEvents.finish(fetch, COMPONENT, -1, batch.size());
+                            dispatch(batch, queue, backupChannel);
+                            batch = batchPool.acquire();
+                            fetch = new JfrEvents.QueryFetch();
+                            fetch.begin();
+                        }
+
+                        // Print progress every 1000000 records
                         synchronized (recordsProcessed) {
-                            if (recordsProcessed[0] % 1000000 == 0) {
+                            if (recordsProcessed[0] >= nextProgress) {
+                                nextProgress += 1000000;
                                 long recordsDone = recordsProcessed[0];
                                 long timeElapsed = System.currentTimeMillis() - startTime;  // Using the startTime now
                                 double elapsedSeconds = timeElapsed / 1000.0;
@@ -152,26 +189,105 @@ public class ExportCSV {
                             }
                         }
                     }
+                    if (!batch.isEmpty()) {
+                        JfrEvents.finish(fetch, COMPONENT, -1, batch.size());
+                        dispatch(batch, queue, backupChannel);
+                    } else {
+                        batch.release();
+                    }
                 }
             }
 
-            // Shutdown both executors
-            executorService.shutdown();
-            backupExecutor.shutdown();
-
-            // Wait until all tasks are finished
-            while (!executorService.isTerminated() || !backupExecutor.isTerminated()) {
-                // Waiting for all tasks to finish
+            // Wait until all backup inserts are finished
+            backupChannel.finish();
+            for (Thread worker : backupWorkers) {
+                worker.join();
             }
-            queue.put(new String[0]);  // Signal the writer thread to finish
+            queue.put(END_OF_STREAM);  // Signal the writer thread to finish
             writerThread.join();  // Wait for the writer thread to finish
 
             System.out.println("Data was successfully exported to " + csvFile);
-            System.out.println("Data was successfully backed up to the " + backupTable);
+            if (backupFailed.get()) {
+                System.out.println("Backing up to the " + backupTable + " FAILED, the table is incomplete");
+            } else {
+                System.out.println("Data was successfully backed up to the " + backupTable);
+            }
+            if (backupRejects.getRejectedRows() > 0) {
+                System.out.printf("%d rows were refused by the %s and written to %s%n",
+                        backupRejects.getRejectedRows(), backupTable, backupRejects.getPath());
+            }
 
         } catch (SQLException | InterruptedException e) {
             e.printStackTrace();
+        } finally {
+            try {
+                backupRejects.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Hands a full batch to both the CSV writer thread and the backup workers.
+     * The batch returns to its pool once both are done with it.
+     */
+    private static void dispatch(RowBatch batch, BlockingQueue<RowBatch> queue, QueueBatchChannel backupChannel)
+            throws InterruptedException {
+        batch.retain(2);
+        queue.put(batch);
+        backupChannel.put(batch);
+    }
+
+    /**
+     * Inserts batches from the backup channel into the backup table until it is finished.
+     * A row the table refuses is isolated by {@link BatchBisector} and written to the
+     * reject file, and the rest of its batch is still committed. After any other
+     * failure the worker keeps taking batches without inserting them, so the export
+     * never blocks on it.
+     */
+    private static void backup(QueueBatchChannel channel, String backupTable, RejectFile rejects,
+                               AtomicBoolean failed, int workerId) {
+        try {
+            try (Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+                 PreparedStatement backupInsertStmt = connection.prepareStatement(
+                         "INSERT INTO " + backupTable + " (id, name, email, address, age) VALUES (?, ?, ?, ?, ?)")) {
+                connection.setAutoCommit(false);
+                BatchBisector bisector = new BatchBisector(backupInsertStmt, ExportCSV::bindBackupRow, rejects);
+                bisector.setEventSource(COMPONENT, workerId);
+                while (true) {
+                    RowBatch batch = channel.take();
+                    if (batch == null) {
+                        return;
+                    }
+                    try {
+                        bisector.execute(batch);
+                    } finally {
+                        batch.release();
+                    }
+                }
+            } catch (SQLException | IOException e) {
+                failed.set(true);
+                e.printStackTrace();
+            }
+            while (true) {
+                RowBatch batch = channel.take();
+                if (batch == null) {
+                    return;
+                }
+                batch.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void bindBackupRow(PreparedStatement statement, RowBatch batch, int row) throws SQLException {
+        statement.setLong(1, batch.getId(row));
+        statement.setString(2, batch.getText(row, 0));
+        statement.setString(3, batch.getText(row, 1));
+        statement.setString(4, batch.getText(row, 2));
+        statement.setInt(5, batch.getInt(row));
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.datagenerator;
+
+import java.util.Arrays;
+
+/**
+ * Decides how many child rows a parent row has, as a pure function of the parent id.
+ *
+ * <p>The count is drawn from a fixed, uniform or Zipfian distribution over
+ * {@code [min, max]} using a hash of the parent id instead of a random source, so any
+ * thread or process recomputes the same count for the same parent. This lets
+ * {@link RelationalGenerator} derive child keys arithmetically: a parent owns the
+ * {@link #getMax} child slots {@code parentId * max + slot}, of which the first
+ * {@code count(parentId)} are used.</p>
+ */
+public class FanOutDistribution {
+    private final String description;
+    private final int min;
+    private final int max;
+    private final long salt;
+    /** Cumulative probability of each count from {@code min} to {@code max}. */
+    private final double[] cumulative;
+
+    private FanOutDistribution(String description, int min, int max, double[] weights, long salt) {
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException("Invalid fan-out range: " + min + ".." + max);
+        }
+        this.description = description;
+        this.min = min;
+        this.max = max;
+        this.salt = salt;
+        this.cumulative = new double[weights.length];
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i] / total;
+            cumulative[i] = sum;
+        }
+        cumulative[weights.length - 1] = 1.0;
+    }
+
+    public static FanOutDistribution fixed(int count, long salt) {
+        return new FanOutDistribution("fixed:" + count, count, count, new double[] {1}, salt);
+    }
+
+    public static FanOutDistribution uniform(int min, int max, long salt) {
+        double[] weights = new double[Math.max(1, max - min + 1)];
+        Arrays.fill(weights, 1);
+        return new FanOutDistribution("uniform:" + min + ":" + max, min, max, weights, salt);
+    }
+
+    /**
+     * A skewed distribution where {@code min} children are the most likely and
+     * each larger count {@code min + k} has a weight of {@code 1 / (k + 1)^theta}.
+     *
+     * @param theta The skew; 0 is uniform and larger values favour fewer children
+     */
+    public static FanOutDistribution zipfian(int min, int max, double theta, long salt) {
+        double[] weights = new double[Math.max(1, max - min + 1)];
+        for (int k = 0; k < weights.length; k++) {
+            weights[k] = 1 / Math.pow(k + 1, theta);
+        }
+        return new FanOutDistribution("zipfian:" + min + ":" + max + ":" + theta, min, max, weights, salt);
+    }
+
+    /**
+     * Parses {@code fixed:<n>}, {@code uniform:<min>:<max>} or {@code zipfian:<min>:<max>:<theta>}.
+     *
+     * @param spec The distribution
+     * @param salt Mixed into the hash, so tables with the same spec get unrelated counts
+     * @return The distribution
+     */
+    public static FanOutDistribution parse(String spec, long salt) {
+        String[] parts = spec.trim().split(":");
+        try {
+            switch (parts[0].toLowerCase()) {
+                case "fixed":
+                    return fixed(Integer.parseInt(parts[1]), salt);
+                case "uniform":
+                    return uniform(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), salt);
+                case "zipfian":
+                    return zipfian(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                            parts.length > 3 ? Double.parseDouble(parts[3]) : 1.0, salt);
+                default:
+                    break;
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid fan-out distribution: " + spec);
+    }
+
+    /**
+     * Returns the number of children of a parent.
+     *
+     * @param parentId The parent id
+     * @return A count in {@code [min, max]}, always the same for the same parent
+     */
+    public int count(long parentId) {
+        if (min == max) {
+            return min;
+        }
+        double u = (HyperLogLog.hash(parentId ^ salt) >>> 11) * 0x1.0p-53;
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] <= u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return min + low;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the expected number of children per parent.
+     *
+     * @return The mean count
+     */
+    public double getMean() {
+        double mean = 0;
+        double previous = 0;
+        for (int i = 0; i < cumulative.length; i++) {
+            mean += (min + i) * (cumulative[i] - previous);
+            previous = cumulative[i];
+        }
+        return mean;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
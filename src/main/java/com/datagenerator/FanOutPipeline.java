@@ -0,0 +1,354 @@
+package com.datagenerator;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates every batch of person rows exactly once and hands it to several sinks.
+ *
+ * <p>Each registered sink owns a bounded queue of batches drained by its own worker
+ * threads. Generator threads put every batch on every queue, so a slow sink only
+ * holds back generation once its queue is full, and all sinks receive identical rows.
+ * The total cost of a run is therefore close to the cost of the slowest sink.</p>
+ *
+ * <p>Ids are assigned explicitly from {@code firstId} upwards and split into one
+ * contiguous range per generator thread. Rows come from {@link PersonFactory}, so an
+ * id always gets the same values. Batches are pooled {@link RowBatch}es shared
+ * by all sinks and recycled once the last sink has written them.</p>
+ *
+ * <p>With {@link #enableSpill} each sink instead gets a {@link SpillBuffer}, so
+ * generation keeps running at full speed while a sink stalls, staging batches
+ * off-heap and then in memory-mapped files rather than on the heap.</p>
+ *
+ * <p>With {@link #enableStatistics} every generator thread also feeds its batches into
+ * its own {@link ColumnStatistics}, merged into {@link #getStatistics} at the end, so
+ * data-quality numbers come from the generation pass itself.</p>
+ *
+ * <p>If a generator thread fails, the others stop at their next batch, and every sink
+ * is told through {@link RecordSink#abandon} before it is closed, so none publishes
+ * the short run as complete. {@link #isSuccessful} then returns {@code false}.</p>
+ */
+public class FanOutPipeline {
+    /** Text columns of a generated person row: first_name, last_name, email. */
+    static final int PERSON_TEXT_COLUMNS = 3;
+    private static final int PROGRESS_EVERY_BATCHES = 10;
+
+    private final int generatorThreads;
+    private final long totalRecords;
+    private final long firstId;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final List<SinkGroup> sinkGroups = new ArrayList<>();
+    private RowBatchPool batchPool;
+    private long spillOffHeapBytes;
+    private long spillMaxBytes;
+    private File spillDirectory;
+    private ColumnStatistics statistics;
+    private volatile RuntimeException generatorFailure;
+
+    /**
+     * Constructs a new pipeline.
+     *
+     * @param generatorThreads The number of threads generating rows
+     * @param totalRecords The total number of rows to generate
+     * @param firstId The id of the first generated row
+     * @param batchSize The number of rows per batch
+     * @param queueCapacity The number of batches each sink may have pending before generation blocks
+     */
+    public FanOutPipeline(int generatorThreads, long totalRecords, long firstId,
+                          int batchSize, int queueCapacity) {
+        this.generatorThreads = generatorThreads;
+        this.totalRecords = totalRecords;
+        this.firstId = firstId;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Stages batches for sinks added after this call in a {@link SpillBuffer}
+     * instead of a bounded queue.
+     *
+     * @param offHeapBytes The direct memory each sink's buffer may use before spilling to files
+     * @param maxBytes The pending bytes per sink at which generation blocks, or 0 for no limit
+     * @param directory The directory for spill files
+     */
+    public void enableSpill(long offHeapBytes, long maxBytes, File directory) {
+        this.spillOffHeapBytes = offHeapBytes;
+        this.spillMaxBytes = maxBytes;
+        this.spillDirectory = directory;
+    }
+
+    /**
+     * Collects {@link ColumnStatistics} over every generated row.
+     */
+    public void enableStatistics() {
+        this.statistics = new ColumnStatistics(PERSON_TEXT_COLUMNS);
+    }
+
+    /**
+     * Returns the statistics merged from all generator threads.
+     *
+     * @return The statistics, or {@code null} if {@link #enableStatistics} was not called
+     */
+    public ColumnStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Registers a sink. Every instance in {@code workers} gets its own thread and
+     * they share one channel, so each batch is written by exactly one of them.
+     *
+     * @param name The name used in progress output
+     * @param workers The sink instances draining this sink's channel
+     */
+    public void addSink(String name, List<? extends RecordSink> workers) {
+        BatchChannel channel;
+        if (spillDirectory != null) {
+            channel = new SpillBuffer(batchSize, PERSON_TEXT_COLUMNS, workers.size(), spillOffHeapBytes,
+                    spillMaxBytes, SpillBuffer.DEFAULT_SEGMENT_BYTES, spillDirectory);
+        } else {
+            channel = new QueueBatchChannel(queueCapacity);
+        }
+        sinkGroups.add(new SinkGroup(name, workers, channel));
+    }
+
+    /**
+     * Runs generation and all sinks to completion. Sinks are closed when done.
+     *
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    public void run() throws InterruptedException {
+        int workerCount = 0;
+        for (SinkGroup group : sinkGroups) {
+            workerCount += group.workers.size();
+        }
+
+        // Enough batches to fill every queue and keep every thread busy without allocating
+        batchPool = new RowBatchPool(batchSize, PERSON_TEXT_COLUMNS,
+                generatorThreads + workerCount + sinkGroups.size() * queueCapacity);
+        ExecutorService executor = Executors.newFixedThreadPool(generatorThreads + workerCount);
+        CountDownLatch generatorsDone = new CountDownLatch(generatorThreads);
+        CountDownLatch sinksDone = new CountDownLatch(workerCount);
+        long startTime = System.currentTimeMillis();
+
+        try {
+            for (SinkGroup group : sinkGroups) {
+                for (int i = 0; i < group.workers.size(); i++) {
+                    RecordSink sink = group.workers.get(i);
+                    int workerId = i;
+                    executor.submit(() -> drain(group, sink, workerId, sinksDone));
+                }
+            }
+
+            long perThread = totalRecords / generatorThreads;
+            long remainder = totalRecords % generatorThreads;
+            long nextStart = firstId;
+            for (int t = 0; t < generatorThreads; t++) {
+                long count = perThread + (t < remainder ? 1 : 0);
+                long start = nextStart;
+                int threadId = t;
+                executor.submit(() -> generate(threadId, start, count, generatorsDone));
+                nextStart += count;
+            }
+            System.out.printf("Started %d generator threads feeding %d sinks, ids %d to %d%n",
+                    generatorThreads, sinkGroups.size(), firstId, nextStart - 1);
+
+            generatorsDone.await();
+            for (SinkGroup group : sinkGroups) {
+                group.channel.finish();
+            }
+            sinksDone.await();
+        } finally {
+            executor.shutdownNow();
+            for (SinkGroup group : sinkGroups) {
+                group.channel.close();
+            }
+        }
+
+        double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+        for (SinkGroup group : sinkGroups) {
+            System.out.printf("Sink %s: wrote %,d rows in %.2f seconds%s%n",
+                    group.name, group.rowsWritten.get(), seconds,
+                    group.failure == null ? "" : " (FAILED: " + group.failure.getMessage() + ")");
+        }
+        if (generatorFailure != null) {
+            System.out.println("Generation FAILED, the sinks hold a partial run: " + generatorFailure);
+        }
+    }
+
+    /**
+     * Returns the number of rows a sink has written so far.
+     *
+     * @param name The sink name given to {@link #addSink}
+     * @return The number of rows written, or -1 if there is no such sink
+     */
+    public long getRowsWritten(String name) {
+        for (SinkGroup group : sinkGroups) {
+            if (group.name.equals(name)) {
+                return group.rowsWritten.get();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the distribution of the time a sink spent writing each batch.
+     *
+     * @param name The sink name given to {@link #addSink}
+     * @return The batch write latencies, or {@code null} if there is no such sink
+     */
+    public LatencyHistogram getBatchLatency(String name) {
+        for (SinkGroup group : sinkGroups) {
+            if (group.name.equals(name)) {
+                return group.batchLatency;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether every row was generated and every sink wrote all of its batches
+     * without an error.
+     *
+     * @return {@code true} if neither a generator nor a sink failed
+     */
+    public boolean isSuccessful() {
+        if (generatorFailure != null) {
+            return false;
+        }
+        for (SinkGroup group : sinkGroups) {
+            if (group.failure != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void generate(int threadId, long startId, long count, CountDownLatch generatorsDone) {
+        Thread.currentThread().setName("Generator-" + threadId);
+        // The batch being filled, owned by this thread until it is published
+        RowBatch batch = null;
+        try {
+            PersonFactory persons = new PersonFactory();
+            ColumnStatistics threadStatistics = statistics == null ? null : new ColumnStatistics(PERSON_TEXT_COLUMNS);
+            batch = batchPool.acquire();
+            long batches = 0;
+
+            for (long i = 0; i < count && generatorFailure == null; i++) {
+                persons.addPerson(batch, startId + i);
+
+                if (batch.isFull()) {
+                    if (threadStatistics != null) {
+                        threadStatistics.update(batch);
+                    }
+                    RowBatch full = batch;
+                    batch = null;
+                    publish(full);
+                    batch = batchPool.acquire();
+                    if (++batches % PROGRESS_EVERY_BATCHES == 0) {
+                        System.out.printf("Generator %d: %.2f%% complete%n",
+                                threadId, (i + 1.0) / count * 100);
+                    }
+                }
+            }
+            if (!batch.isEmpty() && generatorFailure == null) {
+                if (threadStatistics != null) {
+                    threadStatistics.update(batch);
+                }
+                RowBatch last = batch;
+                batch = null;
+                publish(last);
+            }
+            if (threadStatistics != null) {
+                synchronized (statistics) {
+                    statistics.merge(threadStatistics);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                if (generatorFailure == null) {
+                    generatorFailure = e;
+                }
+            }
+            System.out.println("Error in generator " + threadId + ": " + e);
+        } finally {
+            if (batch != null) {
+                batch.release();
+            }
+            generatorsDone.countDown();
+        }
+    }
+
+    private void publish(RowBatch batch) throws InterruptedException {
+        batch.retain(sinkGroups.size());
+        int handedOver = 0;
+        try {
+            for (SinkGroup group : sinkGroups) {
+                // A channel takes over its reference even if put fails
+                handedOver++;
+                group.channel.put(batch);
+            }
+        } finally {
+            for (int i = handedOver; i < sinkGroups.size(); i++) {
+                batch.release();
+            }
+        }
+    }
+
+    private void drain(SinkGroup group, RecordSink sink, int workerId, CountDownLatch sinksDone) {
+        Thread.currentThread().setName(group.name + "-Sink-" + workerId);
+        try (sink) {
+            while (true) {
+                RowBatch batch = group.channel.take();
+                if (batch == null) {
+                    break;
+                }
+                try {
+                    // Keep draining after a failure so generation never blocks on a dead sink
+                    if (group.failure == null) {
+                        long writeStart = System.nanoTime();
+                        sink.write(batch);
+                        group.batchLatency.record(System.nanoTime() - writeStart);
+                        group.rowsWritten.addAndGet(batch.size());
+                    }
+                } catch (Exception e) {
+                    group.failure = e;
+                    System.out.println("Error in sink " + group.name + " worker " + workerId + ": " + e.getMessage());
+                } finally {
+                    batch.release();
+                }
+            }
+            if (generatorFailure != null) {
+                sink.abandon();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.out.println("Error closing sink " + group.name + " worker " + workerId + ": " + e.getMessage());
+        } finally {
+            sinksDone.countDown();
+        }
+    }
+
+    private static final class SinkGroup {
+        private final String name;
+        private final List<? extends RecordSink> workers;
+        private final BatchChannel channel;
+        private final AtomicLong rowsWritten = new AtomicLong();
+        private final LatencyHistogram batchLatency = new LatencyHistogram();
+        private volatile Exception failure;
+
+        private SinkGroup(String name, List<? extends RecordSink> workers, BatchChannel channel) {
+            this.name = name;
+            this.workers = workers;
+            this.channel = channel;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.datagenerator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.Properties;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Starts a Java Flight Recorder recording for a whole run when {@code jfr.enabled} is set.
+ *
+ * <p>The recording uses the JDK's {@code jfr.settings} configuration ({@code default}
+ * for about 1% overhead, {@code profile} for more detail) with every
+ * {@link JfrEvents} event enabled, and is written to {@code jfr.path} when the run
+ * ends. It is also dumped if the JVM exits early, for example on Ctrl+C. The same
+ * recording can be had without this class by starting the JVM with
+ * {@code -XX:StartFlightRecording}.</p>
+ */
+public final class FlightRecording {
+
+    private FlightRecording() {
+    }
+
+    /**
+     * Starts a recording if the properties ask for one.
+     *
+     * @param properties Settings holding the {@code jfr.*} keys
+     * @return The running recording, or {@code null} if recording is disabled or failed to start
+     */
+    public static Recording start(Properties properties) {
+        if (!Boolean.parseBoolean(properties.getProperty("jfr.enabled", "false"))) {
+            return null;
+        }
+        String settings = properties.getProperty("jfr.settings", "default");
+        Path path = Paths.get(properties.getProperty("jfr.path", "jfr/run.jfr"));
+        try {
+            Recording recording = new Recording(Configuration.getConfiguration(settings));
+            recording.setName("datagenerator");
+            recording.enable(JfrEvents.Generate.class);
+            recording.enable(JfrEvents.ExecuteBatch.class);
+            recording.enable(JfrEvents.Commit.class);
+            recording.enable(JfrEvents.LockWait.class);
+            recording.enable(JfrEvents.FileWrite.class);
+            recording.enable(JfrEvents.FileRead.class);
+            recording.enable(JfrEvents.QueryFetch.class);
+            if (path.toAbsolutePath().getParent() != null) {
+                path.toAbsolutePath().getParent().toFile().mkdirs();
+            }
+            recording.setDestination(path);
+            recording.setDumpOnExit(true);
+            recording.start();
+            System.out.println("Flight recording started, writing to " + path);
+            return recording;
+        } catch (IOException | ParseException e) {
+            System.out.println("Could not start flight recording: " + e.getMessage());
+            return null;
+        } catch (IllegalStateException | SecurityException e) {
+            System.out.println("Flight recording is not available: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stops a recording and writes it to its destination.
+     *
+     * @param recording The recording from {@link #start}, or {@code null}
+     */
+    public static void stop(Recording recording) {
+        if (recording == null) {
+            return;
+        }
+        try {
+            recording.stop();
+            System.out.println("Flight recording written to " + recording.getDestination());
+        } catch (IllegalStateException e) {
+            System.out.println("Error stopping flight recording: " + e.getMessage());
+        } finally {
+            recording.close();
+        }
+    }
+}
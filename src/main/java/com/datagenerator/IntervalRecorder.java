@@ -0,0 +1,87 @@
+package com.datagenerator;
+
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects per-interval latency histograms from many threads and hands each finished
+ * interval to a single reader without losing or splitting a sample.
+ *
+ * <p>Two intervals are used in turn. Writers record into the active one; {@link #swap}
+ * makes the other one active and then waits on the old one's {@link Phaser} until
+ * every writer that entered it has left, so the interval it returns is complete and
+ * no longer written to. A writer registers with the phaser before recording and
+ * re-checks that its interval is still active, so it either finishes before the swap
+ * completes or moves on to the new interval. Recording never blocks.</p>
+ */
+public class IntervalRecorder {
+    private volatile Interval active = new Interval();
+    private Interval inactive = new Interval();
+
+    /**
+     * Records one completed operation.
+     *
+     * @param latencyNanos The time from the intended start
+     * @param serviceNanos The time from the actual start
+     */
+    public void record(long latencyNanos, long serviceNanos) {
+        while (true) {
+            Interval interval = active;
+            interval.writers.register();
+            try {
+                if (interval == active) {
+                    interval.latency.record(latencyNanos);
+                    interval.service.record(serviceNanos);
+                    interval.operations.incrementAndGet();
+                    return;
+                }
+            } finally {
+                interval.writers.arriveAndDeregister();
+            }
+        }
+    }
+
+    /**
+     * Ends the current interval and starts a new one. Only one thread may call this.
+     *
+     * @return The finished interval, valid until the next call
+     */
+    public Interval swap() {
+        Interval finished = active;
+        inactive.reset();
+        active = inactive;
+        // The reader is the phaser's one permanent party; the phase ends once every writer has left
+        finished.writers.arriveAndAwaitAdvance();
+        inactive = finished;
+        return finished;
+    }
+
+    /** The samples of one interval. */
+    public static final class Interval {
+        private final Phaser writers = new Phaser(1);
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram service = new LatencyHistogram();
+        private final AtomicLong operations = new AtomicLong();
+
+        private Interval() {
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public LatencyHistogram getService() {
+            return service;
+        }
+
+        public long getOperations() {
+            return operations.get();
+        }
+
+        private void reset() {
+            latency.reset();
+            service.reset();
+            operations.set(0);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.datagenerator;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Writes generated rows into a person table with explicit ids.
+ * Every batch is sent with a single {@code executeBatch()} and committed,
+ * so the connection must not be shared with other threads.
+ * Text fields are materialized as {@code String}s only while binding, since the
+ * driver needs them in that form.
+ * With a {@link RejectFile} set, a batch the database refuses is bisected and only
+ * its bad rows are rejected; without one the whole batch fails.
+ */
+public class JdbcSink implements RecordSink {
+    private final Connection connection;
+    private final PreparedStatement insertStatement;
+    private BatchBisector bisector;
+
+    public JdbcSink(Connection connection, String tableName) throws SQLException {
+        this.connection = connection;
+        connection.setAutoCommit(false);
+        this.insertStatement = connection.prepareStatement(String.format(
+                "INSERT INTO %s (id, first_name, last_name, email) VALUES (?, ?, ?, ?)", tableName));
+    }
+
+    /**
+     * Creates the person table if it does not exist yet.
+     *
+     * @param connection The connection to use
+     * @param tableName The table to create
+     * @throws SQLException If the statement fails
+     */
+    public static void createTable(Connection connection, String tableName) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + tableName + " (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY," +
+                "first_name VARCHAR(100)," +
+                "last_name VARCHAR(100)," +
+                "email VARCHAR(150))");
+        }
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+
+    /**
+     * Returns the first id that is free after the rows already in the table,
+     * so appended rows never collide with existing ones.
+     *
+     * @param connection The connection to use
+     * @param tableName The table to inspect
+     * @return The next free id
+     * @throws SQLException If the query fails
+     */
+    public static long nextId(Connection connection, String tableName) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) + 1 FROM " + tableName)) {
+            return rs.next() ? rs.getLong(1) : 1L;
+        }
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Makes failed batches isolate and reject their bad rows instead of failing.
+     *
+     * @param rejects The file collecting the refused rows
+     * @throws SQLException If the statement's connection cannot be read
+     */
+    public void setRejectFile(RejectFile rejects) throws SQLException {
+        this.bisector = new BatchBisector(insertStatement, JdbcSink::bindRow, rejects);
+        bisector.setEventSource("JdbcSink", -1);
+    }
+
+    @Override
+    public void write(RowBatch batch) throws SQLException, IOException {
+        if (bisector != null) {
+            bisector.execute(batch);
+            return;
+        }
+        insert(batch);
+        commit(batch.size());
+    }
+
+    /**
+     * Sends a batch without committing it, for callers that must check something
+     * before deciding between {@link #commit} and {@link #rollback}.
+     *
+     * @param batch The rows to insert
+     * @throws SQLException If the insert fails
+     */
+    public void insert(RowBatch batch) throws SQLException {
+        JfrEvents.ExecuteBatch execute = new JfrEvents.ExecuteBatch();
+        execute.begin();
+        try {
+            for (int row = 0; row < batch.size(); row++) {
+                bindRow(insertStatement, batch, row);
+                insertStatement.addBatch();
+            }
+            insertStatement.executeBatch();
+        } catch (SQLException e) {
+            insertStatement.clearBatch();
+            execute.failed = true;
+            throw e;
+        } finally {
+            JfrEvents.finish(execute, "JdbcSink", -1, batch.size());
+        }
+    }
+
+    /**
+     * Commits the rows inserted since the last commit.
+     *
+     * @param rows The number of those rows, for the recorded event
+     * @throws SQLException If the commit fails
+     */
+    public void commit(int rows) throws SQLException {
+        JfrEvents.Commit commit = new JfrEvents.Commit();
+        commit.begin();
+        connection.commit();
+        JfrEvents.finish(commit, "JdbcSink", -1, rows);
+    }
+
+    /**
+     * Discards the rows inserted since the last commit.
+     *
+     * @throws SQLException If the rollback fails
+     */
+    public void rollback() throws SQLException {
+        connection.rollback();
+    }
+
+    static void bindRow(PreparedStatement statement, RowBatch batch, int row) throws SQLException {
+        statement.setLong(1, batch.getId(row));
+        statement.setString(2, batch.getText(row, 0));
+        statement.setString(3, batch.getText(row, 1));
+        statement.setString(4, batch.getText(row, 2));
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            insertStatement.close();
+        } finally {
+            connection.close();
+        }
+    }
+}
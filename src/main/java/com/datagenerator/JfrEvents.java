@@ -0,0 +1,117 @@
+package com.datagenerator;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for the phases of generating and loading rows.
+ *
+ * <p>Each phase of a batch (generating it with Faker, {@code executeBatch()},
+ * {@code commit()}, waiting for a shared lock, appending it to a file, parsing it from
+ * a file, fetching it from a query) is one event with its row count, so a recording shows where a slow run
+ * spends its time next to the GC, I/O and lock events of the JVM. Events are created
+ * per batch, not per row, and cost next to nothing unless a recording has them
+ * enabled; fields that are expensive to compute are only filled in after
+ * {@code shouldCommit()}. Start an event with {@code begin()} and end it with
+ * {@link #finish}. Stack traces are off, since the component and thread already
+ * identify the call site. See {@link FlightRecording} for starting a recording.</p>
+ */
+public final class JfrEvents {
+    private static final String CATEGORY = "Data Generator";
+
+    private JfrEvents() {
+    }
+
+    /** Fields shared by every phase event. */
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public abstract static class PhaseEvent extends Event {
+        @Label("Component")
+        @Description("The class running the phase")
+        String component;
+
+        @Label("Worker Thread")
+        @Description("The component's worker number, or -1 if it has none")
+        int worker = -1;
+
+        @Label("Rows")
+        long rows;
+    }
+
+    @Name("com.datagenerator.Generate")
+    @Label("Generate Rows")
+    @Description("Rows produced by Faker for one batch")
+    public static final class Generate extends PhaseEvent {
+    }
+
+    @Name("com.datagenerator.ExecuteBatch")
+    @Label("Execute Batch")
+    @Description("One JDBC executeBatch() call")
+    public static final class ExecuteBatch extends PhaseEvent {
+        @Label("Failed")
+        boolean failed;
+    }
+
+    @Name("com.datagenerator.Commit")
+    @Label("Commit")
+    @Description("One JDBC commit() of inserted rows")
+    public static final class Commit extends PhaseEvent {
+    }
+
+    @Name("com.datagenerator.LockWait")
+    @Label("Lock Wait")
+    @Description("Time spent waiting to enter a shared write lock")
+    public static final class LockWait extends PhaseEvent {
+        @Label("Lock")
+        String lock;
+    }
+
+    @Name("com.datagenerator.FileWrite")
+    @Label("File Write")
+    @Description("Rows appended to a file")
+    public static final class FileWrite extends PhaseEvent {
+        @Label("Path")
+        String path;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.datagenerator.FileRead")
+    @Label("File Read")
+    @Description("Rows read and parsed from a file for one batch")
+    public static final class FileRead extends PhaseEvent {
+        @Label("Path")
+        String path;
+    }
+
+    @Name("com.datagenerator.QueryFetch")
+    @Label("Query Fetch")
+    @Description("Rows fetched from a JDBC result set for one batch")
+    public static final class QueryFetch extends PhaseEvent {
+    }
+
+    /**
+     * Ends a phase event and commits it if a recording wants it.
+     *
+     * @param event The event, begun when the phase started
+     * @param component The class running the phase
+     * @param worker The component's worker number, or -1
+     * @param rows The rows the phase handled
+     */
+    public static void finish(PhaseEvent event, String component, int worker, long rows) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.component = component;
+            event.worker = worker;
+            event.rows = rows;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.datagenerator;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks ids from a contiguous generated range for {@link WorkloadDriver}.
+ *
+ * <p>The Zipfian variant follows Gray et al., "Quickly Generating Billion-Record
+ * Synthetic Databases": rank {@code r} is drawn with probability proportional to
+ * {@code 1 / r^theta}. The normalising constant is summed exactly for the first million
+ * ranks and approximated by its integral beyond that, so setup stays fast on any table
+ * size. Ranks are scattered over the range with a hash, so the hot ids are not all
+ * neighbours on the same index pages.</p>
+ */
+public class KeyDistribution {
+    private static final long EXACT_ZETA_TERMS = 1_000_000;
+
+    private final long firstId;
+    private final long count;
+    private final boolean zipfian;
+    private final double theta;
+    private final double alpha;
+    private final double zetaN;
+    private final double eta;
+
+    private KeyDistribution(long firstId, long count, boolean zipfian, double theta) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Key range is empty");
+        }
+        this.firstId = firstId;
+        this.count = count;
+        this.zipfian = zipfian;
+        this.theta = theta;
+        if (zipfian) {
+            double zeta2 = 1 + Math.pow(0.5, theta);
+            this.alpha = 1 / (1 - theta);
+            this.zetaN = zeta(count, theta);
+            this.eta = (1 - Math.pow(2.0 / count, 1 - theta)) / (1 - zeta2 / zetaN);
+        } else {
+            this.alpha = 0;
+            this.zetaN = 0;
+            this.eta = 0;
+        }
+    }
+
+    public static KeyDistribution uniform(long firstId, long count) {
+        return new KeyDistribution(firstId, count, false, 0);
+    }
+
+    /**
+     * @param theta The skew, between 0 (uniform) and 1 exclusive; YCSB uses 0.99
+     */
+    public static KeyDistribution zipfian(long firstId, long count, double theta) {
+        if (theta <= 0 || theta >= 1) {
+            throw new IllegalArgumentException("Zipfian theta must be between 0 and 1: " + theta);
+        }
+        return new KeyDistribution(firstId, count, true, theta);
+    }
+
+    /**
+     * Returns the next id.
+     *
+     * @return An id in {@code [firstId, firstId + count)}
+     */
+    public long next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (!zipfian) {
+            return firstId + random.nextLong(count);
+        }
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+        long rank;
+        if (uz < 1) {
+            rank = 0;
+        } else if (uz < 1 + Math.pow(0.5, theta)) {
+            rank = 1;
+        } else {
+            rank = Math.min(count - 1, (long) (count * Math.pow(eta * u - eta + 1, alpha)));
+        }
+        return firstId + Math.floorMod(scramble(rank), count);
+    }
+
+    public long getFirstId() {
+        return firstId;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    private static double zeta(long n, double theta) {
+        long exact = Math.min(n, EXACT_ZETA_TERMS);
+        double sum = 0;
+        for (long i = 1; i <= exact; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        if (n > exact) {
+            sum += (Math.pow(n, 1 - theta) - Math.pow(exact, 1 - theta)) / (1 - theta);
+        }
+        return sum;
+    }
+
+    /** FNV-1a over the bytes of the rank. */
+    private static long scramble(long rank) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < 8; i++) {
+            hash ^= (rank >>> (i * 8)) & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return zipfian
+                ? String.format("zipfian(theta=%.2f) over ids %d..%d", theta, firstId, firstId + count - 1)
+                : String.format("uniform over ids %d..%d", firstId, firstId + count - 1);
+    }
+}
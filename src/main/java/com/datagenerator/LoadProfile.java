@@ -0,0 +1,109 @@
+package com.datagenerator;
+
+import java.util.Properties;
+
+/**
+ * A target request rate over time for {@link OpenLoopLoadGenerator}.
+ *
+ * <ul>
+ *   <li>{@code constant}: {@code load.rate} for {@code load.duration.seconds}</li>
+ *   <li>{@code ramp}: linearly from {@code load.rate} to {@code load.ramp.to}</li>
+ *   <li>{@code step}: starts at {@code load.rate} and adds {@code load.step.increment}
+ *       every {@code load.step.seconds}</li>
+ * </ul>
+ */
+public class LoadProfile {
+
+    /** The shape of the schedule. */
+    public enum Shape {
+        CONSTANT, RAMP, STEP
+    }
+
+    private final Shape shape;
+    private final double startRate;
+    private final double endRate;
+    private final double stepIncrement;
+    private final double stepSeconds;
+    private final double durationSeconds;
+
+    private LoadProfile(Shape shape, double startRate, double endRate, double stepIncrement,
+                        double stepSeconds, double durationSeconds) {
+        this.shape = shape;
+        this.startRate = startRate;
+        this.endRate = endRate;
+        this.stepIncrement = stepIncrement;
+        this.stepSeconds = stepSeconds;
+        this.durationSeconds = durationSeconds;
+    }
+
+    public static LoadProfile constant(double rate, double durationSeconds) {
+        return new LoadProfile(Shape.CONSTANT, rate, rate, 0, durationSeconds, durationSeconds);
+    }
+
+    public static LoadProfile ramp(double fromRate, double toRate, double durationSeconds) {
+        return new LoadProfile(Shape.RAMP, fromRate, toRate, 0, durationSeconds, durationSeconds);
+    }
+
+    public static LoadProfile step(double startRate, double increment, double stepSeconds, double durationSeconds) {
+        return new LoadProfile(Shape.STEP, startRate, startRate, increment, stepSeconds, durationSeconds);
+    }
+
+    /**
+     * Builds a profile from the {@code load.*} settings.
+     *
+     * @param properties The settings
+     * @param unitsPerOperation How many rate units one operation stands for (the batch size for rows/sec)
+     * @return The profile, with rates in operations per second
+     */
+    public static LoadProfile fromProperties(Properties properties, double unitsPerOperation) {
+        Shape shape = Shape.valueOf(properties.getProperty("load.profile", "constant").trim().toUpperCase());
+        double rate = Double.parseDouble(properties.getProperty("load.rate", "100")) / unitsPerOperation;
+        double duration = Double.parseDouble(properties.getProperty("load.duration.seconds", "60"));
+        switch (shape) {
+            case RAMP:
+                double to = Double.parseDouble(properties.getProperty("load.ramp.to", "1000")) / unitsPerOperation;
+                return ramp(rate, to, duration);
+            case STEP:
+                double increment = Double.parseDouble(properties.getProperty("load.step.increment", "100"))
+                        / unitsPerOperation;
+                double stepSeconds = Double.parseDouble(properties.getProperty("load.step.seconds", "10"));
+                return step(rate, increment, stepSeconds, duration);
+            default:
+                return constant(rate, duration);
+        }
+    }
+
+    /**
+     * Returns the target rate at a point of the schedule.
+     *
+     * @param elapsedSeconds Seconds since the start of the run
+     * @return The target operations per second
+     */
+    public double rateAt(double elapsedSeconds) {
+        switch (shape) {
+            case RAMP:
+                return startRate + (endRate - startRate) * Math.min(1.0, elapsedSeconds / durationSeconds);
+            case STEP:
+                return startRate + stepIncrement * Math.floor(elapsedSeconds / stepSeconds);
+            default:
+                return startRate;
+        }
+    }
+
+    public double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    @Override
+    public String toString() {
+        switch (shape) {
+            case RAMP:
+                return String.format("ramp %.1f -> %.1f ops/sec over %.0fs", startRate, endRate, durationSeconds);
+            case STEP:
+                return String.format("step %.1f ops/sec +%.1f every %.0fs for %.0fs",
+                        startRate, stepIncrement, stepSeconds, durationSeconds);
+            default:
+                return String.format("constant %.1f ops/sec for %.0fs", startRate, durationSeconds);
+        }
+    }
+}
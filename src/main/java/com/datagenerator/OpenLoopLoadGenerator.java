@@ -0,0 +1,255 @@
+package com.datagenerator;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.github.javafaker.Faker;
+
+/**
+ * Open-loop insert load generator for finding the throughput at which latency degrades.
+ *
+ * <p>A scheduler thread releases insert batches at the times dictated by a
+ * {@link LoadProfile}, independently of how fast the database answers; batches that
+ * cannot start yet wait in the worker pool's queue. Latency is measured from the
+ * <em>intended</em> start time, so time spent queued behind a slow response counts
+ * against the database instead of silently lowering the offered load (coordinated
+ * omission). Service time, measured from the actual start, is reported alongside.
+ * Failed batches are rolled back and only counted as errors, so the percentiles and
+ * the achieved rate describe successful batches.</p>
+ *
+ * <p>Rows are generated before the run and reused, so Faker cost stays out of the
+ * measurement; ids come from AUTO_INCREMENT. Every {@code load.interval.seconds} one
+ * line with the target and achieved rate and latency percentiles is printed and
+ * appended to {@code load.report.path}.</p>
+ */
+public class OpenLoopLoadGenerator {
+    private static final String REPORT_HEADER = "elapsed_s,target_rows_per_sec,rows_per_sec,errors,backlog,"
+            + "p50_ms,p90_ms,p99_ms,p999_ms,max_ms,service_p99_ms";
+    private static final int TEMPLATE_BATCHES = 32;
+
+    private final Properties properties;
+    private final LoadProfile profile;
+    private final int batchSize;
+    private final String table;
+    private final RowBatch[] templates = new RowBatch[TEMPLATE_BATCHES];
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<PreparedStatement> statements = new ThreadLocal<>();
+    private final IntervalRecorder intervals = new IntervalRecorder();
+    private final LatencyHistogram totalLatency = new LatencyHistogram();
+    private final AtomicLong errors = new AtomicLong();
+
+    public OpenLoopLoadGenerator(Properties properties) {
+        this.properties = properties;
+        this.batchSize = Integer.parseInt(properties.getProperty("load.batchSize", "100"));
+        this.table = properties.getProperty("load.table", "try_tb");
+        boolean rowsUnit = properties.getProperty("load.rate.unit", "rows").trim().equalsIgnoreCase("rows");
+        this.profile = LoadProfile.fromProperties(properties, rowsUnit ? batchSize : 1);
+    }
+
+    /**
+     * Runs a load test configured by the {@code load.*} settings.
+     *
+     * @param args {@code [propertiesFile]} overriding {@code application.properties}
+     */
+    public static void main(String[] args) {
+        Properties properties = AppProperties.load(args.length > 0 ? args[0] : null);
+        if (properties == null) {
+            return;
+        }
+        try {
+            new OpenLoopLoadGenerator(properties).run();
+        } catch (SQLException e) {
+            System.out.println("Database error: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error writing load report: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs the whole schedule and waits for every issued batch to finish.
+     *
+     * @throws SQLException If the table cannot be prepared
+     * @throws IOException If the report cannot be written
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public void run() throws SQLException, IOException, InterruptedException {
+        int threads = Integer.parseInt(properties.getProperty("load.threads", "16"));
+        int maxBacklog = Integer.parseInt(properties.getProperty("load.maxBacklog", "100000"));
+        double intervalSeconds = Double.parseDouble(properties.getProperty("load.interval.seconds", "1"));
+        File reportFile = new File(properties.getProperty("load.report.path", "load/report.csv"));
+        reportFile.getAbsoluteFile().getParentFile().mkdirs();
+
+        try (Connection conn = openConnection()) {
+            JdbcSink.createTable(conn, table);
+        }
+        generateTemplates();
+
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+        workers.prestartAllCoreThreads();
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        System.out.println("Load profile: " + profile + ", " + batchSize + " rows per batch, " + threads + " threads");
+
+        boolean writeHeader = !reportFile.exists() || reportFile.length() == 0;
+        try (PrintWriter report = new PrintWriter(new FileWriter(reportFile, true))) {
+            if (writeHeader) {
+                report.println(REPORT_HEADER);
+            }
+            long start = System.nanoTime();
+            long intervalNanos = (long) (intervalSeconds * 1e9);
+            reporter.scheduleAtFixedRate(() -> reportInterval(report, start, intervalSeconds, workers),
+                    intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+
+            long durationNanos = (long) (profile.getDurationSeconds() * 1e9);
+            long intended = start;
+            long issued = 0;
+            while (intended - start < durationNanos) {
+                double rate = profile.rateAt((intended - start) / 1e9);
+                if (rate <= 0) {
+                    intended += TimeUnit.MILLISECONDS.toNanos(1);
+                    continue;
+                }
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                if (workers.getQueue().size() > maxBacklog) {
+                    System.out.printf("Backlog exceeded %d batches; the database cannot sustain %.1f batches/sec%n",
+                            maxBacklog, rate);
+                    break;
+                }
+                long scheduledStart = intended;
+                RowBatch template = templates[(int) (issued++ % TEMPLATE_BATCHES)];
+                workers.execute(() -> insert(template, scheduledStart));
+                intended += (long) (1e9 / rate);
+            }
+
+            workers.shutdown();
+            workers.awaitTermination(1, TimeUnit.HOURS);
+            reporter.shutdown();
+            reporter.awaitTermination(1, TimeUnit.MINUTES);
+            reportInterval(report, start, intervalSeconds, workers);
+        } finally {
+            workers.shutdownNow();
+            reporter.shutdownNow();
+            for (Connection conn : connections) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    System.out.println("Error closing connection: " + e.getMessage());
+                }
+            }
+        }
+
+        System.out.printf("Overall: %d batches, p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms, %d errors%n",
+                totalLatency.getCount(), totalLatency.getValueAtPercentile(50) / 1e6,
+                totalLatency.getValueAtPercentile(99) / 1e6, totalLatency.getValueAtPercentile(99.9) / 1e6,
+                totalLatency.getMax() / 1e6, errors.get());
+    }
+
+    private void generateTemplates() {
+        Faker faker = new Faker();
+        for (int i = 0; i < TEMPLATE_BATCHES; i++) {
+            templates[i] = new RowBatch(batchSize, FanOutPipeline.PERSON_TEXT_COLUMNS);
+            for (int row = 0; row < batchSize; row++) {
+                templates[i].addRow(row);
+                templates[i].addText(faker.name().firstName());
+                templates[i].addText(faker.name().lastName());
+                templates[i].addText(faker.internet().emailAddress());
+            }
+        }
+    }
+
+    private void insert(RowBatch batch, long scheduledStart) {
+        long actualStart = System.nanoTime();
+        PreparedStatement statement = null;
+        try {
+            statement = statement();
+            for (int row = 0; row < batch.size(); row++) {
+                statement.setString(1, batch.getText(row, 0));
+                statement.setString(2, batch.getText(row, 1));
+                statement.setString(3, batch.getText(row, 2));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            statement.getConnection().commit();
+        } catch (SQLException e) {
+            if (errors.incrementAndGet() == 1) {
+                System.out.println("Insert error: " + e.getMessage());
+            }
+            if (statement != null) {
+                rollback(statement);
+            }
+            return;
+        }
+        long end = System.nanoTime();
+        intervals.record(end - scheduledStart, end - actualStart);
+        totalLatency.record(end - scheduledStart);
+    }
+
+    /** Discards a failed batch so the worker's next batch starts a clean transaction. */
+    private static void rollback(PreparedStatement statement) {
+        try {
+            statement.clearBatch();
+            statement.getConnection().rollback();
+        } catch (SQLException e) {
+            System.out.println("Rollback error: " + e.getMessage());
+        }
+    }
+
+    /** Each worker thread keeps its own connection and statement. */
+    private PreparedStatement statement() throws SQLException {
+        PreparedStatement statement = statements.get();
+        if (statement == null) {
+            Connection conn = openConnection();
+            conn.setAutoCommit(false);
+            connections.add(conn);
+            statement = conn.prepareStatement(
+                    "INSERT INTO " + table + " (first_name, last_name, email) VALUES (?, ?, ?)");
+            statements.set(statement);
+        }
+        return statement;
+    }
+
+    private Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(properties.getProperty("db.url"),
+                properties.getProperty("db.user"), properties.getProperty("db.password"));
+    }
+
+    private synchronized void reportInterval(PrintWriter report, long start, double intervalSeconds,
+                                             ThreadPoolExecutor workers) {
+        IntervalRecorder.Interval interval = intervals.swap();
+        LatencyHistogram latency = interval.getLatency();
+        LatencyHistogram service = interval.getService();
+        long batches = interval.getOperations();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        double targetRows = profile.rateAt(Math.max(0, elapsed - intervalSeconds / 2)) * batchSize;
+
+        String line = String.format("%.1f,%.0f,%.0f,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f",
+                elapsed, targetRows, batches * batchSize / intervalSeconds, errors.get(), workers.getQueue().size(),
+                latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(90) / 1e6,
+                latency.getValueAtPercentile(99) / 1e6, latency.getValueAtPercentile(99.9) / 1e6,
+                latency.getMax() / 1e6, service.getValueAtPercentile(99) / 1e6);
+        report.println(line);
+        report.flush();
+        System.out.println("Load: " + line);
+    }
+}
@@ -0,0 +1,60 @@
+package com.datagenerator;
+
+import java.util.Objects;
+
+/**
+ * One generated person row, as produced by {@link PersonFactory#person} and
+ * {@link PersonStream}. Immutable.
+ */
+public final class Person {
+    private final long id;
+    private final String firstName;
+    private final String lastName;
+    private final String email;
+
+    public Person(long id, String firstName, String lastName, String email) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.email = email;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Person)) {
+            return false;
+        }
+        Person other = (Person) o;
+        return id == other.id && Objects.equals(firstName, other.firstName)
+                && Objects.equals(lastName, other.lastName) && Objects.equals(email, other.email);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, firstName, lastName, email);
+    }
+
+    @Override
+    public String toString() {
+        return id + "," + firstName + "," + lastName + "," + email;
+    }
+}
@@ -0,0 +1,69 @@
+package com.datagenerator;
+
+import java.util.Random;
+
+import com.github.javafaker.Faker;
+
+/**
+ * Generates the person row for an id deterministically.
+ *
+ * <p>The Faker's random source is reseeded from the id before every row, so the same
+ * id always yields the same first name, last name and email, whichever thread, process
+ * or run generates it. Readers can therefore recompute any generated value, such as
+ * the email of a given id, without querying the table. Not thread-safe; use one
+ * instance per thread.</p>
+ */
+public class PersonFactory {
+    /** Seed used by all generators unless another is given. */
+    public static final long DEFAULT_SEED = 0x5DEECE66DL;
+
+    private final long seed;
+    private final Random random = new Random();
+    private final Faker faker = new Faker(random);
+
+    public PersonFactory() {
+        this(DEFAULT_SEED);
+    }
+
+    public PersonFactory(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Appends the row for an id to a batch.
+     *
+     * @param batch The batch to append to; it must have {@link FanOutPipeline#PERSON_TEXT_COLUMNS} text columns
+     * @param id The id of the row
+     */
+    public void addPerson(RowBatch batch, long id) {
+        random.setSeed(seed ^ (id * 0x9E3779B97F4A7C15L));
+        batch.addRow(id);
+        batch.addText(faker.name().firstName());
+        batch.addText(faker.name().lastName());
+        batch.addText(faker.internet().emailAddress());
+    }
+
+    /**
+     * Returns the person for an id.
+     *
+     * @param id The id of the row
+     * @return The person {@link #addPerson} writes for that id
+     */
+    public Person person(long id) {
+        random.setSeed(seed ^ (id * 0x9E3779B97F4A7C15L));
+        return new Person(id, faker.name().firstName(), faker.name().lastName(), faker.internet().emailAddress());
+    }
+
+    /**
+     * Returns the email generated for an id.
+     *
+     * @param id The id of the row
+     * @return The email {@link #addPerson} writes for that id
+     */
+    public String email(long id) {
+        random.setSeed(seed ^ (id * 0x9E3779B97F4A7C15L));
+        faker.name().firstName();
+        faker.name().lastName();
+        return faker.internet().emailAddress();
+    }
+}
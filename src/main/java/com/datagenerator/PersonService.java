@@ -0,0 +1,317 @@
+package com.datagenerator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP service returning generated person records without a database.
+ *
+ * <ul>
+ *   <li>{@code GET /persons/<id>} returns one person as a JSON object.</li>
+ *   <li>{@code GET /persons?from=<id>&count=<n>[&format=csv]} streams a range of persons
+ *       as a JSON array or CSV, generated batch by batch with chunked encoding, so
+ *       memory use does not depend on the range length.</li>
+ *   <li>{@code GET /stats} returns request and cache counters.</li>
+ * </ul>
+ *
+ * <p>Records come from {@link PersonFactory}, so an id always returns the same person,
+ * the same one the generators write to {@code try_tb}. Single lookups go through a
+ * bounded LRU cache split into segments with their own lock, so concurrent requests
+ * for different ids rarely wait for each other; ranges bypass the cache so a large scan
+ * does not evict the hot ids. Requests are handled on a fixed thread pool.</p>
+ *
+ * <p>The service has no authentication, so it listens on the loopback address unless
+ * {@code service.bind} names another interface, or {@code 0.0.0.0} for all of them.</p>
+ */
+public class PersonService {
+    private static final String PERSONS_PATH = "/persons";
+    private static final int CACHE_SEGMENTS = 16;
+    private static final int STREAM_BATCH_ROWS = 1000;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long maxRange;
+    private final long seed;
+    private final ThreadLocal<PersonFactory> factories;
+    private final ThreadLocal<RowBatch> singleRows = ThreadLocal.withInitial(
+            () -> new RowBatch(1, FanOutPipeline.PERSON_TEXT_COLUMNS));
+    private final LruSegment[] cache = new LruSegment[CACHE_SEGMENTS];
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong rowsStreamed = new AtomicLong();
+
+    /**
+     * Creates a service; call {@link #start} to accept requests.
+     *
+     * @param bindAddress The address to listen on
+     * @param port The port to listen on, or 0 for any free port
+     * @param threads The number of request handling threads
+     * @param cacheSize The maximum number of cached single records
+     * @param maxRange The maximum number of rows one range request may ask for
+     * @param seed The {@link PersonFactory} seed
+     * @throws IOException If the port cannot be bound
+     */
+    public PersonService(InetAddress bindAddress, int port, int threads, int cacheSize, long maxRange, long seed) throws IOException {
+        this.maxRange = maxRange;
+        this.seed = seed;
+        this.factories = ThreadLocal.withInitial(() -> new PersonFactory(this.seed));
+        for (int i = 0; i < CACHE_SEGMENTS; i++) {
+            cache[i] = new LruSegment(Math.max(1, cacheSize / CACHE_SEGMENTS));
+        }
+        this.server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        this.executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext(PERSONS_PATH, this::handlePersons);
+        server.createContext("/stats", this::handleStats);
+    }
+
+    /**
+     * Starts the service configured by the {@code service.*} settings and runs until the process is stopped.
+     *
+     * @param args {@code [propertiesFile]}
+     */
+    public static void main(String[] args) {
+        Properties properties = AppProperties.load(args.length > 0 ? args[0] : null);
+        if (properties == null) {
+            return;
+        }
+        try {
+            String bind = properties.getProperty("service.bind", "").trim();
+            PersonService service = new PersonService(
+                    bind.isEmpty() ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bind),
+                    Integer.parseInt(properties.getProperty("service.port", "8080")),
+                    Integer.parseInt(properties.getProperty("service.threads", "32")),
+                    Integer.parseInt(properties.getProperty("service.cache.size", "100000")),
+                    Long.parseLong(properties.getProperty("service.maxRange", "10000000")),
+                    Long.parseLong(properties.getProperty("service.seed", String.valueOf(PersonFactory.DEFAULT_SEED))));
+            Runtime.getRuntime().addShutdownHook(new Thread(service::stop));
+            service.start();
+        } catch (IOException e) {
+            System.out.println("Error starting service: " + e.getMessage());
+        }
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Person service listening on " + server.getAddress());
+    }
+
+    /**
+     * Stops accepting requests, lets running ones finish for up to a second and
+     * releases the threads.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handlePersons(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendText(exchange, 405, "Only GET is supported");
+                return;
+            }
+            URI uri = exchange.getRequestURI();
+            String path = uri.getPath();
+            if (path.equals(PERSONS_PATH) || path.equals(PERSONS_PATH + "/")) {
+                streamRange(exchange, parseQuery(uri.getRawQuery()));
+            } else {
+                sendPerson(exchange, Long.parseLong(path.substring(PERSONS_PATH.length() + 1)));
+            }
+        } catch (NumberFormatException e) {
+            sendText(exchange, 400, "Invalid number: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            sendText(exchange, 400, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void sendPerson(HttpExchange exchange, long id) throws IOException {
+        LruSegment segment = cache[(int) Math.floorMod(HyperLogLog.hash(id), (long) CACHE_SEGMENTS)];
+        byte[] body;
+        synchronized (segment) {
+            body = segment.get(id);
+        }
+        if (body != null) {
+            cacheHits.incrementAndGet();
+        } else {
+            cacheMisses.incrementAndGet();
+            RowBatch batch = singleRows.get();
+            batch.clear();
+            factories.get().addPerson(batch, id);
+            StringBuilder json = new StringBuilder(128);
+            appendJson(json, batch, 0);
+            body = json.toString().getBytes(StandardCharsets.UTF_8);
+            synchronized (segment) {
+                segment.put(id, body);
+            }
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void streamRange(HttpExchange exchange, Map<String, String> query) throws IOException {
+        long from = Long.parseLong(require(query, "from"));
+        long count = query.containsKey("count") ? Long.parseLong(query.get("count"))
+                : Long.parseLong(require(query, "to")) - from + 1;
+        if (count < 0 || count > maxRange) {
+            throw new IllegalArgumentException("Range must hold between 0 and " + maxRange + " rows");
+        }
+        boolean csv = "csv".equalsIgnoreCase(query.get("format"));
+
+        exchange.getResponseHeaders().set("Content-Type", csv ? "text/csv" : "application/json");
+        // Length 0 selects chunked encoding, so rows are sent while they are generated
+        exchange.sendResponseHeaders(200, 0);
+        PersonFactory factory = factories.get();
+        RowBatch batch = new RowBatch((int) Math.min(STREAM_BATCH_ROWS, Math.max(1, count)),
+                FanOutPipeline.PERSON_TEXT_COLUMNS);
+        CsvRowEncoder encoder = new CsvRowEncoder(true, false);
+        StringBuilder json = new StringBuilder();
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 1 << 16)) {
+            writer.write(csv ? "id,first_name,last_name,email\n" : "[");
+            boolean first = true;
+            for (long id = from; id < from + count; id++) {
+                factory.addPerson(batch, id);
+                if (batch.isFull() || id == from + count - 1) {
+                    if (csv) {
+                        encoder.encode(batch, writer);
+                    } else {
+                        for (int row = 0; row < batch.size(); row++) {
+                            json.setLength(0);
+                            json.append(first ? "\n" : ",\n");
+                            appendJson(json, batch, row);
+                            writer.append(json);
+                            first = false;
+                        }
+                    }
+                    rowsStreamed.addAndGet(batch.size());
+                    batch.clear();
+                }
+            }
+            if (!csv) {
+                writer.write("\n]\n");
+            }
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            long hits = cacheHits.get();
+            long misses = cacheMisses.get();
+            int cached = 0;
+            for (LruSegment segment : cache) {
+                synchronized (segment) {
+                    cached += segment.size();
+                }
+            }
+            sendText(exchange, 200, String.format(
+                    "{\"requests\":%d,\"cacheHits\":%d,\"cacheMisses\":%d,\"hitRatio\":%.4f,\"cached\":%d,\"rowsStreamed\":%d}",
+                    requests.get(), hits, misses, hits + misses == 0 ? 0.0 : (double) hits / (hits + misses),
+                    cached, rowsStreamed.get()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void appendJson(StringBuilder json, RowBatch batch, int row) {
+        json.append("{\"id\":").append(batch.getId(row));
+        appendField(json, "first_name", batch, row, 0);
+        appendField(json, "last_name", batch, row, 1);
+        appendField(json, "email", batch, row, 2);
+        json.append('}');
+    }
+
+    private static void appendField(StringBuilder json, String name, RowBatch batch, int row, int column) {
+        json.append(",\"").append(name).append("\":\"");
+        char[] chars = batch.getChars();
+        int start = batch.getTextStart(row, column);
+        int end = start + batch.getTextLength(row, column);
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        if (status == 200) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> values = new HashMap<>();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    values.put(pair.substring(0, eq), pair.substring(eq + 1));
+                }
+            }
+        }
+        return values;
+    }
+
+    private static String require(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    /** One segment of the record cache, evicting its least recently used entry when full. */
+    private static final class LruSegment extends LinkedHashMap<Long, byte[]> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        LruSegment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            return size() > capacity;
+        }
+    }
+}
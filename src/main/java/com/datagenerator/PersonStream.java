@@ -0,0 +1,212 @@
+package com.datagenerator;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Exposes generated persons as lazy streams over an id range.
+ *
+ * <p>The streams are backed by spliterators that split their id range in halves, so
+ * {@code .parallel()} spreads generation evenly over the fork-join pool. Every split
+ * creates its own {@link PersonFactory} when it first produces a row and shares nothing
+ * with the others. Because {@link PersonFactory} derives each row from its id alone, the
+ * same id range yields the same rows sequentially or in parallel, in any split order.
+ * Rows are generated as they are consumed, so {@code limit()}, {@code findFirst()} and
+ * similar short-circuiting operations only generate what they need.</p>
+ *
+ * <pre>{@code
+ * long gmail = PersonStream.persons(1, 10_000_000).parallel()
+ *         .filter(p -> p.getEmail().endsWith("@gmail.com"))
+ *         .count();
+ * }</pre>
+ *
+ * <p>{@link #batches} yields the same rows as {@link RowBatch}es, the form taken by
+ * {@link RecordSink}s, without creating a {@link Person} or {@code String} per row.</p>
+ */
+public final class PersonStream {
+    /** Ranges smaller than this are not split further; generating a row costs microseconds. */
+    private static final long MIN_SPLIT_ROWS = 1024;
+
+    private PersonStream() {
+    }
+
+    /**
+     * Returns the persons with ids {@code [firstId, firstId + count)} and the default seed.
+     *
+     * @param firstId The first id
+     * @param count The number of persons
+     * @return A sequential stream; call {@code parallel()} to generate on all cores
+     */
+    public static Stream<Person> persons(long firstId, long count) {
+        return persons(firstId, count, PersonFactory.DEFAULT_SEED);
+    }
+
+    /**
+     * Returns the persons with ids {@code [firstId, firstId + count)}.
+     *
+     * @param firstId The first id
+     * @param count The number of persons
+     * @param seed The {@link PersonFactory} seed
+     * @return A sequential stream; call {@code parallel()} to generate on all cores
+     */
+    public static Stream<Person> persons(long firstId, long count, long seed) {
+        checkRange(firstId, count);
+        return StreamSupport.stream(new PersonSpliterator(firstId, firstId + count, seed), false);
+    }
+
+    /**
+     * Returns the persons with ids {@code [firstId, firstId + count)} in batches, with the default seed.
+     *
+     * @param firstId The first id
+     * @param count The number of persons
+     * @param batchSize The rows per batch; only the last batch may hold fewer
+     * @return A sequential stream; call {@code parallel()} to generate on all cores
+     */
+    public static Stream<RowBatch> batches(long firstId, long count, int batchSize) {
+        return batches(firstId, count, batchSize, PersonFactory.DEFAULT_SEED);
+    }
+
+    /**
+     * Returns the persons with ids {@code [firstId, firstId + count)} in batches. Every
+     * batch is newly allocated and belongs to the consumer.
+     *
+     * @param firstId The first id
+     * @param count The number of persons
+     * @param batchSize The rows per batch; only the last batch may hold fewer
+     * @param seed The {@link PersonFactory} seed
+     * @return A sequential stream; call {@code parallel()} to generate on all cores
+     */
+    public static Stream<RowBatch> batches(long firstId, long count, int batchSize, long seed) {
+        checkRange(firstId, count);
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        return StreamSupport.stream(new BatchSpliterator(firstId, firstId + count, batchSize, seed), false);
+    }
+
+    private static void checkRange(long firstId, long count) {
+        if (count < 0 || firstId > Long.MAX_VALUE - count) {
+            throw new IllegalArgumentException("Invalid id range: " + count + " ids from " + firstId);
+        }
+    }
+
+    /** Generates one person per id of {@code [next, end)}. */
+    private static final class PersonSpliterator implements Spliterator<Person> {
+        private final long seed;
+        private final long end;
+        private long next;
+        private PersonFactory factory;
+
+        PersonSpliterator(long next, long end, long seed) {
+            this.next = next;
+            this.end = end;
+            this.seed = seed;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Person> action) {
+            if (next >= end) {
+                return false;
+            }
+            action.accept(factory().person(next++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Person> action) {
+            PersonFactory persons = factory();
+            long id = next;
+            // Claim the whole range first, as the contract asks if the action throws
+            next = end;
+            for (; id < end; id++) {
+                action.accept(persons.person(id));
+            }
+        }
+
+        @Override
+        public Spliterator<Person> trySplit() {
+            long remaining = end - next;
+            if (remaining < 2 * MIN_SPLIT_ROWS) {
+                return null;
+            }
+            long mid = next + remaining / 2;
+            PersonSpliterator prefix = new PersonSpliterator(next, mid, seed);
+            next = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - next;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | DISTINCT | NONNULL | IMMUTABLE;
+        }
+
+        private PersonFactory factory() {
+            if (factory == null) {
+                factory = new PersonFactory(seed);
+            }
+            return factory;
+        }
+    }
+
+    /** Generates {@code [next, end)} as batches of {@code batchSize} rows, split on batch boundaries. */
+    private static final class BatchSpliterator implements Spliterator<RowBatch> {
+        private final int batchSize;
+        private final long seed;
+        private final long end;
+        private long next;
+        private PersonFactory factory;
+
+        BatchSpliterator(long next, long end, int batchSize, long seed) {
+            this.next = next;
+            this.end = end;
+            this.batchSize = batchSize;
+            this.seed = seed;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super RowBatch> action) {
+            if (next >= end) {
+                return false;
+            }
+            if (factory == null) {
+                factory = new PersonFactory(seed);
+            }
+            int rows = (int) Math.min(batchSize, end - next);
+            RowBatch batch = new RowBatch(rows, FanOutPipeline.PERSON_TEXT_COLUMNS);
+            for (int i = 0; i < rows; i++) {
+                factory.addPerson(batch, next++);
+            }
+            action.accept(batch);
+            return true;
+        }
+
+        @Override
+        public Spliterator<RowBatch> trySplit() {
+            long batches = estimateSize();
+            if (batches < 2 || end - next < 2 * MIN_SPLIT_ROWS) {
+                return null;
+            }
+            long mid = next + (batches / 2) * batchSize;
+            BatchSpliterator prefix = new BatchSpliterator(next, mid, batchSize, seed);
+            next = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return (end - next + batchSize - 1) / batchSize;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+}
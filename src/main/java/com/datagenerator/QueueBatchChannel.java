@@ -0,0 +1,50 @@
+package com.datagenerator;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A {@link BatchChannel} backed by a bounded on-heap queue of batch references.
+ * Producers block once {@code capacity} batches are pending, which is how a slow
+ * sink pushes back on generation.
+ */
+public class QueueBatchChannel implements BatchChannel {
+    private static final RowBatch END_OF_STREAM = new RowBatch(0, 0);
+
+    private final BlockingQueue<RowBatch> queue;
+
+    public QueueBatchChannel(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public void put(RowBatch batch) throws InterruptedException {
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            batch.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public RowBatch take() throws InterruptedException {
+        RowBatch batch = queue.take();
+        if (batch == END_OF_STREAM) {
+            // Leave the marker in place for the other workers
+            queue.put(END_OF_STREAM);
+            return null;
+        }
+        return batch;
+    }
+
+    @Override
+    public void finish() throws InterruptedException {
+        queue.put(END_OF_STREAM);
+    }
+
+    @Override
+    public void close() {
+        queue.clear();
+    }
+}
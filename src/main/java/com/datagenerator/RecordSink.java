@@ -0,0 +1,42 @@
+package com.datagenerator;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * A destination for generated person rows.
+ * Rows arrive as {@link RowBatch}es holding an id and the text fields
+ * {@code first_name, last_name, email}.
+ * A sink instance is only ever driven by a single thread; sinks that need
+ * more parallelism are registered with several instances.
+ */
+public interface RecordSink extends AutoCloseable {
+
+    /**
+     * Writes one batch of rows. The batch is shared with the other sinks
+     * of the pipeline and must not be modified or kept after this call returns.
+     *
+     * @param batch The rows to write
+     * @throws Exception If the rows could not be written
+     */
+    void write(RowBatch batch) throws Exception;
+
+    /**
+     * Tells the sink, before {@link #close()}, that the run failed elsewhere and its
+     * output is incomplete. Sinks that mark their output as complete on close, such
+     * as a manifest, must not do so after this call. Does nothing by default.
+     */
+    default void abandon() {
+    }
+
+    /**
+     * Flushes pending data and releases the resources held by this sink.
+     * Narrower than {@link AutoCloseable#close()} so that closing never has to
+     * handle an {@link InterruptedException}.
+     *
+     * @throws IOException If flushing or closing a file fails
+     * @throws SQLException If flushing or closing a database connection fails
+     */
+    @Override
+    void close() throws IOException, SQLException;
+}
@@ -0,0 +1,111 @@
+package com.datagenerator;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects rows the database refused, each with the error that refused it.
+ *
+ * <p>Lines hold the columns of the {@link CsvSink} layout, or of the layout given to the
+ * constructor, followed by an {@code error} column. Every field is quoted and embedded
+ * quotes are doubled, so commas, quotes or line breaks in the data or in the driver's
+ * message cannot shift the columns, and the file can be read back with
+ * {@link com.opencsv.CSVReader}.
+ * The file is only created once the first row is rejected, and every rejection is
+ * flushed immediately. Safe to share between threads.</p>
+ */
+public class RejectFile implements Closeable {
+    private static final String HEADER = "id,first_name,last_name,email,error";
+
+    private final File file;
+    private static final char QUOTE = '"';
+
+    private final String header;
+    private final CsvRowEncoder encoder;
+    private final AtomicLong rejectedRows = new AtomicLong();
+    private Writer writer;
+
+    public RejectFile(String path) {
+        this(path, HEADER, false);
+    }
+
+    /**
+     * Constructs a reject file for rows of another layout.
+     *
+     * @param path The file to append to
+     * @param header The header line, ending with the error column
+     * @param includeInt Whether rows end with the batch's integer column
+     */
+    public RejectFile(String path, String header, boolean includeInt) {
+        this.file = new File(path);
+        this.header = header;
+        this.encoder = new CsvRowEncoder(true, includeInt, QUOTE);
+    }
+
+    /**
+     * Appends one row of a batch with its error.
+     *
+     * @param batch The batch holding the row
+     * @param row The index of the row within the batch
+     * @param error The database error for the row
+     * @throws IOException If the file cannot be written
+     */
+    public synchronized void reject(RowBatch batch, int row, String error) throws IOException {
+        StringWriter line = new StringWriter();
+        encoder.encodeRow(batch, row, line);
+        line.getBuffer().setLength(line.getBuffer().length() - 1);
+        line.write(',');
+        line.write(QUOTE);
+        for (char c : String.valueOf(error).toCharArray()) {
+            if (c == QUOTE) {
+                line.write(QUOTE);
+                line.write(QUOTE);
+            } else if (c == '\n' || c == '\r') {
+                line.write(' ');
+            } else {
+                line.write(c);
+            }
+        }
+        line.write(QUOTE);
+        line.write('\n');
+        Writer out = open();
+        out.write(line.toString());
+        out.flush();
+        rejectedRows.incrementAndGet();
+    }
+
+    public long getRejectedRows() {
+        return rejectedRows.get();
+    }
+
+    public String getPath() {
+        return file.getPath();
+    }
+
+    private Writer open() throws IOException {
+        if (writer == null) {
+            file.getAbsoluteFile().getParentFile().mkdirs();
+            boolean writeHeader = !file.exists() || file.length() == 0;
+            writer = new BufferedWriter(new FileWriter(file, true));
+            if (writeHeader) {
+                writer.write(header);
+                writer.write('\n');
+            }
+        }
+        return writer;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+}
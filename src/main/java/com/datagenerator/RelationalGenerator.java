@@ -0,0 +1,372 @@
+package com.datagenerator;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.javafaker.Faker;
+
+/**
+ * Generates persons with their addresses and orders into three linked tables.
+ *
+ * <p>No table ever reads another: every foreign key is computed from the parent's id.
+ * Person {@code p} owns the address ids {@code p * A + slot} and the order ids
+ * {@code p * O + slot}, where {@code A} and {@code O} are the maximum fan-outs of the
+ * address and order {@link FanOutDistribution}s and only the first
+ * {@code count(p)} slots are used. An address's person is therefore {@code id / A}, an
+ * order's person {@code id / O}, and an order's shipping address is one of its
+ * person's used address slots, picked by a hash of the order id. Child ids are sparse
+ * but ascending with their parent.</p>
+ *
+ * <p>The person id range is split into {@code threads} chunks and every chunk of every
+ * table is an independent task with its own connection, so all three tables are
+ * generated and loaded at once. Persons come from {@link PersonFactory} and child
+ * values are seeded from their ids the same way, so a run is repeatable. Foreign key
+ * constraints are added after the load, which also makes the database check that
+ * every reference holds.</p>
+ */
+public class RelationalGenerator {
+    private static final String[] ORDER_STATUSES = {"NEW", "PAID", "SHIPPED", "DELIVERED", "CANCELLED"};
+    private static final LocalDate FIRST_ORDER_DATE = LocalDate.of(2020, 1, 1);
+    private static final int ORDER_DATE_DAYS = 5 * 365;
+    private static final long ADDRESS_SALT = 0x2545F4914F6CDD1DL;
+    private static final long ORDER_SALT = 0x61C8864680B583EBL;
+    private static final long SHIPPING_SALT = 0x7F4A7C159E3779B9L;
+
+    private final Properties properties;
+    private final String personTable;
+    private final String addressTable;
+    private final String orderTable;
+    private final long firstPersonId;
+    private final long persons;
+    private final FanOutDistribution addresses;
+    private final FanOutDistribution orders;
+    private final int addressSlots;
+    private final int orderSlots;
+    private final int threads;
+    private final int batchSize;
+    private final AtomicLong personRows = new AtomicLong();
+    private final AtomicLong addressRows = new AtomicLong();
+    private final AtomicLong orderRows = new AtomicLong();
+    private final AtomicBoolean failed = new AtomicBoolean();
+
+    /**
+     * Constructs a new generator.
+     *
+     * @param properties Settings holding {@code db.url}, {@code db.user} and {@code db.password}
+     * @param personTable The person table
+     * @param addressTable The address table
+     * @param orderTable The order table
+     * @param firstPersonId The id of the first person
+     * @param persons The number of persons
+     * @param addresses The number of addresses per person
+     * @param orders The number of orders per person
+     * @param threads The number of tasks running at once
+     * @param batchSize The rows per insert batch
+     */
+    public RelationalGenerator(Properties properties, String personTable, String addressTable, String orderTable,
+                               long firstPersonId, long persons, FanOutDistribution addresses,
+                               FanOutDistribution orders, int threads, int batchSize) {
+        this.properties = properties;
+        this.personTable = personTable;
+        this.addressTable = addressTable;
+        this.orderTable = orderTable;
+        this.firstPersonId = firstPersonId;
+        this.persons = persons;
+        this.addresses = addresses;
+        this.orders = orders;
+        this.addressSlots = Math.max(1, addresses.getMax());
+        this.orderSlots = Math.max(1, orders.getMax());
+        this.threads = threads;
+        this.batchSize = batchSize;
+        if (firstPersonId < 1 || firstPersonId + persons > Long.MAX_VALUE / Math.max(addressSlots, orderSlots)) {
+            throw new IllegalArgumentException("Person ids " + firstPersonId + ".." + (firstPersonId + persons - 1)
+                    + " leave no room for child ids");
+        }
+    }
+
+    /**
+     * Generates the tables configured by the {@code relational.*} settings.
+     *
+     * @param args {@code [propertiesFile]}
+     */
+    public static void main(String[] args) {
+        Properties properties = AppProperties.load(args.length > 0 ? args[0] : null);
+        if (properties == null) {
+            return;
+        }
+        RelationalGenerator generator = new RelationalGenerator(properties,
+                properties.getProperty("relational.personTable", "person_tb"),
+                properties.getProperty("relational.addressTable", "address_tb"),
+                properties.getProperty("relational.orderTable", "order_tb"),
+                Long.parseLong(properties.getProperty("relational.firstPersonId", "1")),
+                Long.parseLong(properties.getProperty("relational.persons", "100000")),
+                FanOutDistribution.parse(properties.getProperty("relational.addresses", "uniform:1:3"), ADDRESS_SALT),
+                FanOutDistribution.parse(properties.getProperty("relational.orders", "zipfian:0:20:1.0"), ORDER_SALT),
+                Integer.parseInt(properties.getProperty("relational.threads",
+                        String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                Integer.parseInt(properties.getProperty("relational.batchSize", "1000")));
+        try {
+            generator.run(Boolean.parseBoolean(properties.getProperty("relational.foreignKeys", "true")));
+        } catch (SQLException e) {
+            System.out.println("Database error: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates the tables, loads all of them concurrently and optionally adds the foreign keys.
+     *
+     * @param addForeignKeys Whether to add the foreign key constraints after loading
+     * @return {@code true} if every task succeeded
+     * @throws SQLException If the tables cannot be created
+     * @throws InterruptedException If interrupted while waiting for the tasks
+     */
+    public boolean run(boolean addForeignKeys) throws SQLException, InterruptedException {
+        try (Connection connection = connect()) {
+            createTables(connection);
+        }
+        System.out.printf("Generating %,d persons with %s addresses (~%,.0f) and %s orders (~%,.0f) on %d threads%n",
+                persons, addresses, persons * addresses.getMean(), orders, persons * orders.getMean(), threads);
+
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long chunk = (persons + threads - 1) / threads;
+            for (long from = firstPersonId; from < firstPersonId + persons; from += chunk) {
+                long to = Math.min(from + chunk, firstPersonId + persons);
+                long chunkFrom = from;
+                // Interleave the tables so all three are loading at any time
+                executor.submit(() -> {
+                    PersonFactory factory = new PersonFactory();
+                    load(personTable, chunkFrom, to, factory::addPerson, JdbcSink::bindRow, personRows);
+                });
+                executor.submit(() -> {
+                    Random random = new Random();
+                    Faker faker = new Faker(random);
+                    load(addressTable, chunkFrom, to, (batch, personId) -> addAddresses(batch, personId, faker, random),
+                            this::bindAddress, addressRows);
+                });
+                executor.submit(() -> {
+                    Random random = new Random();
+                    load(orderTable, chunkFrom, to, (batch, personId) -> addOrders(batch, personId, random),
+                            this::bindOrder, orderRows);
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } finally {
+            executor.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Loaded %,d persons, %,d addresses and %,d orders in %.2f seconds (%,.0f rows/s)%n",
+                personRows.get(), addressRows.get(), orderRows.get(), seconds,
+                (personRows.get() + addressRows.get() + orderRows.get()) / seconds);
+
+        if (failed.get()) {
+            System.out.println("Some tasks failed; foreign keys were not added");
+            return false;
+        }
+        if (addForeignKeys) {
+            try (Connection connection = connect()) {
+                addForeignKeys(connection);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the id of an address slot of a person.
+     *
+     * @param personId The person
+     * @param slot The slot, below {@code addresses.count(personId)}
+     * @return The address id
+     */
+    public long addressId(long personId, int slot) {
+        return personId * addressSlots + slot;
+    }
+
+    /**
+     * Returns the id of an order slot of a person.
+     *
+     * @param personId The person
+     * @param slot The slot, below {@code orders.count(personId)}
+     * @return The order id
+     */
+    public long orderId(long personId, int slot) {
+        return personId * orderSlots + slot;
+    }
+
+    public long personOfAddress(long addressId) {
+        return addressId / addressSlots;
+    }
+
+    public long personOfOrder(long orderId) {
+        return orderId / orderSlots;
+    }
+
+    /**
+     * Returns the shipping address of an order.
+     *
+     * @param orderId The order
+     * @return One of the addresses of the order's person, or -1 if that person has none
+     */
+    public long shippingAddressOf(long orderId) {
+        long personId = personOfOrder(orderId);
+        int count = addresses.count(personId);
+        if (count == 0) {
+            return -1;
+        }
+        return addressId(personId, (int) Math.floorMod(HyperLogLog.hash(orderId ^ SHIPPING_SALT), (long) count));
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(properties.getProperty("db.url"),
+                properties.getProperty("db.user"), properties.getProperty("db.password"));
+    }
+
+    private void createTables(Connection connection) throws SQLException {
+        JdbcSink.createTable(connection, personTable);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + addressTable + " (" +
+                "id BIGINT PRIMARY KEY," +
+                "person_id BIGINT NOT NULL," +
+                "street VARCHAR(150)," +
+                "city VARCHAR(100)," +
+                "zip_code VARCHAR(20))");
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + orderTable + " (" +
+                "id BIGINT PRIMARY KEY," +
+                "person_id BIGINT NOT NULL," +
+                "address_id BIGINT," +
+                "amount DECIMAL(10,2)," +
+                "status VARCHAR(20)," +
+                "ordered_on DATE)");
+        }
+    }
+
+    private void addForeignKeys(Connection connection) throws SQLException {
+        String[] statements = {
+            "ALTER TABLE " + addressTable + " ADD CONSTRAINT fk_" + addressTable + "_person"
+                + " FOREIGN KEY (person_id) REFERENCES " + personTable + " (id)",
+            "ALTER TABLE " + orderTable + " ADD CONSTRAINT fk_" + orderTable + "_person"
+                + " FOREIGN KEY (person_id) REFERENCES " + personTable + " (id)",
+            "ALTER TABLE " + orderTable + " ADD CONSTRAINT fk_" + orderTable + "_address"
+                + " FOREIGN KEY (address_id) REFERENCES " + addressTable + " (id)"
+        };
+        int added = 0;
+        try (Statement stmt = connection.createStatement()) {
+            for (String sql : statements) {
+                try {
+                    stmt.execute(sql);
+                    added++;
+                } catch (SQLException e) {
+                    System.out.println("Could not add foreign key: " + e.getMessage());
+                }
+            }
+        }
+        System.out.printf("Added %d of %d foreign keys%n", added, statements.length);
+    }
+
+    /** Appends the rows of one person to a batch. */
+    private interface RowSource {
+        void addRows(RowBatch batch, long personId);
+    }
+
+    /**
+     * Generates and inserts the rows of one table for the persons {@code [from, to)}.
+     */
+    private void load(String table, long from, long to, RowSource source, BatchBisector.RowBinder binder,
+                      AtomicLong rows) {
+        Thread.currentThread().setName("Relational-" + table + "-" + from);
+        // The largest fan-out must fit, since a person's rows are added at once
+        RowBatch batch = new RowBatch(batchSize + Math.max(addressSlots, orderSlots), 3);
+        String columns = table.equals(personTable) ? "id, first_name, last_name, email"
+                : table.equals(addressTable) ? "id, person_id, street, city, zip_code"
+                : "id, person_id, address_id, amount, status, ordered_on";
+        String placeholders = columns.replaceAll("[a-z_]+", "?");
+        try (Connection connection = connect();
+             PreparedStatement statement = connection.prepareStatement(
+                     "INSERT INTO " + table + " (" + columns + ") VALUES (" + placeholders + ")")) {
+            connection.setAutoCommit(false);
+            for (long personId = from; personId < to; personId++) {
+                source.addRows(batch, personId);
+                if (batch.size() >= batchSize || personId == to - 1) {
+                    for (int row = 0; row < batch.size(); row++) {
+                        binder.bind(statement, batch, row);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    connection.commit();
+                    rows.addAndGet(batch.size());
+                    batch.clear();
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            // The task's future is never read, so this is the only place a failure shows
+            failed.set(true);
+            System.out.println("Error loading " + table + " for persons " + from + ".." + (to - 1) + ": " + e);
+        }
+    }
+
+    private void addAddresses(RowBatch batch, long personId, Faker faker, Random random) {
+        int count = addresses.count(personId);
+        for (int slot = 0; slot < count; slot++) {
+            long id = addressId(personId, slot);
+            random.setSeed(ADDRESS_SALT ^ (id * 0x9E3779B97F4A7C15L));
+            batch.addRow(id);
+            batch.addText(faker.address().streetAddress());
+            batch.addText(faker.address().city());
+            batch.addText(faker.address().zipCode());
+        }
+    }
+
+    private void addOrders(RowBatch batch, long personId, Random random) {
+        int count = orders.count(personId);
+        for (int slot = 0; slot < count; slot++) {
+            long id = orderId(personId, slot);
+            random.setSeed(ORDER_SALT ^ (id * 0x9E3779B97F4A7C15L));
+            batch.addRow(id);
+            batch.addText(String.format("%d.%02d", 1 + random.nextInt(999), random.nextInt(100)));
+            batch.addText(ORDER_STATUSES[random.nextInt(ORDER_STATUSES.length)]);
+            batch.addText(FIRST_ORDER_DATE.plusDays(random.nextInt(ORDER_DATE_DAYS)).toString());
+        }
+    }
+
+    private void bindAddress(PreparedStatement statement, RowBatch batch, int row) throws SQLException {
+        long id = batch.getId(row);
+        statement.setLong(1, id);
+        statement.setLong(2, personOfAddress(id));
+        statement.setString(3, batch.getText(row, 0));
+        statement.setString(4, batch.getText(row, 1));
+        statement.setString(5, batch.getText(row, 2));
+    }
+
+    private void bindOrder(PreparedStatement statement, RowBatch batch, int row) throws SQLException {
+        long id = batch.getId(row);
+        long addressId = shippingAddressOf(id);
+        statement.setLong(1, id);
+        statement.setLong(2, personOfOrder(id));
+        if (addressId < 0) {
+            statement.setNull(3, Types.BIGINT);
+        } else {
+            statement.setLong(3, addressId);
+        }
+        statement.setBigDecimal(4, new BigDecimal(batch.getText(row, 0)));
+        statement.setString(5, batch.getText(row, 1));
+        statement.setDate(6, Date.valueOf(batch.getText(row, 2)));
+    }
+}
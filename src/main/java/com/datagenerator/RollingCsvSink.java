@@ -0,0 +1,158 @@
+package com.datagenerator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Writes generated rows to a series of CSV shards plus a manifest describing them.
+ *
+ * <p>Shards are named {@code <base>.00000.csv}, {@code <base>.00001.csv}, ... and use
+ * the {@link CsvSink} layout, each with its own header, so every shard can be loaded
+ * on its own. A new shard is started once the current one holds {@code maxRows} rows
+ * or, checked after each batch, {@code maxBytes} bytes; 0 disables a limit. On close
+ * the manifest {@code <base>.manifest.csv} lists each shard's file name, row count,
+ * byte size and id range, and is written atomically, so a complete manifest always
+ * describes complete shards. The manifest and shards left by an earlier run are
+ * deleted when the sink is created, so a shorter run never leaves stale shards next to
+ * its own, and no manifest is written if a write failed, so a manifest never lists
+ * shards of a failed run. {@link CsvToDatabaseImporter#importManifest} loads the
+ * shards of a manifest concurrently.</p>
+ */
+public class RollingCsvSink implements RecordSink {
+    /** Header of the manifest file. */
+    public static final String MANIFEST_HEADER = "file,rows,bytes,min_id,max_id";
+    /** Suffix of manifest files, after the base path. */
+    public static final String MANIFEST_SUFFIX = ".manifest.csv";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String basePath;
+    private final long maxRows;
+    private final long maxBytes;
+    private final CsvRowEncoder encoder = new CsvRowEncoder(true, false);
+    private final List<String> manifestLines = new ArrayList<>();
+    private Writer writer;
+    private CountingOutputStream counter;
+    private File shardFile;
+    private long shardRows;
+    private long minId;
+    private long maxId;
+    private boolean failed;
+
+    /**
+     * Constructs a new sink.
+     *
+     * @param basePath The output path without the {@code .csv} extension
+     * @param maxRows The rows per shard, or 0 for no row limit
+     * @param maxBytes The approximate bytes per shard, or 0 for no size limit
+     * @throws IOException If a manifest or shard left by an earlier run cannot be deleted
+     */
+    public RollingCsvSink(String basePath, long maxRows, long maxBytes) throws IOException {
+        this.basePath = basePath.endsWith(".csv") ? basePath.substring(0, basePath.length() - 4) : basePath;
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        File base = new File(this.basePath).getAbsoluteFile();
+        base.getParentFile().mkdirs();
+        Files.deleteIfExists(new File(getManifestPath()).toPath());
+        Pattern shardName = Pattern.compile(Pattern.quote(base.getName()) + "\\.\\d{5,}\\.csv");
+        File[] stale = base.getParentFile().listFiles((dir, name) -> shardName.matcher(name).matches());
+        if (stale != null) {
+            for (File shard : stale) {
+                Files.delete(shard.toPath());
+            }
+        }
+    }
+
+    /**
+     * Returns the manifest path written by this sink.
+     *
+     * @return The manifest path
+     */
+    public String getManifestPath() {
+        return basePath + MANIFEST_SUFFIX;
+    }
+
+    @Override
+    public void write(RowBatch batch) throws IOException {
+        try {
+            for (int row = 0; row < batch.size(); row++) {
+                if (writer == null || (maxRows > 0 && shardRows >= maxRows)) {
+                    roll();
+                }
+                encoder.encodeRow(batch, row, writer);
+                long id = batch.getId(row);
+                minId = Math.min(minId, id);
+                maxId = Math.max(maxId, id);
+                shardRows++;
+            }
+            if (maxBytes > 0 && writer != null) {
+                writer.flush();
+                if (counter.getCount() >= maxBytes) {
+                    finishShard();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    private void roll() throws IOException {
+        finishShard();
+        shardFile = new File(String.format("%s.%05d.csv", basePath, manifestLines.size()));
+        counter = new CountingOutputStream(new FileOutputStream(shardFile));
+        writer = new BufferedWriter(new OutputStreamWriter(counter, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writer.write("id,first_name,last_name,email\n");
+        shardRows = 0;
+        minId = Long.MAX_VALUE;
+        maxId = Long.MIN_VALUE;
+    }
+
+    private void finishShard() throws IOException {
+        if (writer == null) {
+            return;
+        }
+        writer.close();
+        writer = null;
+        if (shardRows == 0) {
+            shardFile.delete();
+            return;
+        }
+        manifestLines.add(shardFile.getName() + "," + shardRows + "," + counter.getCount() + "," + minId + "," + maxId);
+    }
+
+    @Override
+    public void abandon() {
+        failed = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finishShard();
+        if (failed) {
+            System.out.println("Not writing manifest " + getManifestPath() + ": the CSV shards are incomplete");
+            return;
+        }
+        File manifest = new File(getManifestPath());
+        File temp = new File(manifest.getPath() + ".tmp");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8))) {
+            out.println(MANIFEST_HEADER);
+            for (String line : manifestLines) {
+                out.println(line);
+            }
+        }
+        Files.move(temp.toPath(), manifest.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        System.out.printf("Wrote %d CSV shards, manifest %s%n", manifestLines.size(), manifest.getPath());
+    }
+}
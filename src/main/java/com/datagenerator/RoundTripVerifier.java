@@ -0,0 +1,606 @@
+package com.datagenerator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * Verifies that a person table and a CSV file hold the same rows, without sorting
+ * or diffing them.
+ *
+ * <p>Every row is normalized (fields trimmed, UTF-8) and hashed, and the hashes are
+ * summed per id range together with a row count. Sums do not depend on row order, so
+ * the table is scanned over id ranges on several connections while the file is read
+ * in parallel byte chunks split at line boundaries. Ranges whose sum or count differ
+ * are split into {@code split} sub-ranges and checked again, down to single ids, and
+ * the smallest mismatching ranges are reported. Rows outside the table's id range are
+ * reported as well, unless the comparison is limited to an id range with
+ * {@link #verify(File, long, long)}, which ignores rows outside it on both sides.</p>
+ *
+ * <p>The columns compared are the ones named in the file's header, so the same code
+ * checks the {@link CsvSink} layout {@code id,first_name,last_name,email} and the
+ * {@code ID,Name,Email,Address,Age} layout of {@link ExportCSV} against its backup
+ * table. Fields may be quoted, with embedded quotes doubled, but must not contain line
+ * breaks. Files without an id column, such as those written by {@link ChangeToCsv},
+ * can only be compared as a whole, since rows cannot be placed in id ranges.</p>
+ */
+public class RoundTripVerifier {
+    private static final int READ_BUFFER_BYTES = 1 << 16;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final Pattern COLUMN_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final Properties properties;
+    private final String table;
+    private final int threads;
+    private final int initialRanges;
+    private final int split;
+    private final int maxReported;
+
+    /**
+     * Constructs a new verifier.
+     *
+     * @param properties Settings holding {@code db.url}, {@code db.user} and {@code db.password}
+     * @param table The table to compare
+     * @param threads The number of connections and file readers
+     * @param initialRanges The number of id ranges of the first pass
+     * @param split The number of sub-ranges a mismatching range is split into
+     * @param maxReported The maximum number of mismatching ranges narrowed down and reported
+     */
+    public RoundTripVerifier(Properties properties, String table, int threads, int initialRanges,
+                             int split, int maxReported) {
+        this.properties = properties;
+        this.table = table;
+        this.threads = threads;
+        this.initialRanges = initialRanges;
+        this.split = Math.max(2, split);
+        this.maxReported = maxReported;
+    }
+
+    /**
+     * Compares a CSV file with the table configured by the {@code verify.*} settings.
+     *
+     * @param args {@code <csvFile> [propertiesFile [firstId count]]}
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length == 3) {
+            System.out.println("Usage: RoundTripVerifier <csvFile> [propertiesFile [firstId count]]");
+            System.out.println("  Compares the columns named in the CSV header, quoted or not, with the verify.table");
+            System.out.println("  table. Fields must not contain line breaks. With firstId and count only ids in");
+            System.out.println("  [firstId, firstId + count) are compared, e.g. the rows of the run that wrote the file.");
+            return;
+        }
+        Properties properties = AppProperties.load(args.length > 1 ? args[1] : null);
+        if (properties == null) {
+            return;
+        }
+        RoundTripVerifier verifier = new RoundTripVerifier(properties,
+                properties.getProperty("verify.table", "try_tb"),
+                Integer.parseInt(properties.getProperty("verify.threads",
+                        String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                Integer.parseInt(properties.getProperty("verify.ranges", "1024")),
+                Integer.parseInt(properties.getProperty("verify.split", "16")),
+                Integer.parseInt(properties.getProperty("verify.maxReported", "100")));
+        try {
+            boolean matches;
+            if (args.length > 3) {
+                long firstId = Long.parseLong(args[2]);
+                matches = verifier.verify(new File(args[0]), firstId, firstId + Long.parseLong(args[3]));
+            } else {
+                matches = verifier.verify(new File(args[0]));
+            }
+            System.out.println(matches ? "Table and file match" : "Table and file DIFFER");
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid id range: " + e.getMessage());
+        } catch (SQLException e) {
+            System.out.println("Database error: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error reading " + args[0] + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Compares the whole table with a CSV file and prints the mismatching id ranges.
+     *
+     * @param csvFile The file to compare
+     * @return {@code true} if both hold the same rows
+     * @throws SQLException If the table cannot be read
+     * @throws IOException If the file cannot be read or its header names no valid columns
+     * @throws InterruptedException If interrupted while waiting for the threads
+     */
+    public boolean verify(File csvFile) throws SQLException, IOException, InterruptedException {
+        return verify(csvFile, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Compares the rows with ids in {@code [fromId, toId)} of the table and of a CSV file,
+     * such as the rows written by one run, and prints the mismatching id ranges. A file
+     * without an id column is compared as a whole against that range of the table.
+     *
+     * @param csvFile The file to compare
+     * @param fromId The first id compared
+     * @param toId The id after the last one compared
+     * @return {@code true} if both hold the same rows in the range
+     * @throws SQLException If the table cannot be read
+     * @throws IOException If the file cannot be read or its header names no valid columns
+     * @throws InterruptedException If interrupted while waiting for the threads
+     */
+    public boolean verify(File csvFile, long fromId, long toId)
+            throws SQLException, IOException, InterruptedException {
+        return verify(csvFile, evenRanges(fromId, toId, false), fromId, toId);
+    }
+
+    private boolean verify(File csvFile, RangeDigest idRanges, long fromId, long toId)
+            throws SQLException, IOException, InterruptedException {
+        long start = System.nanoTime();
+        List<String> columns = readHeader(csvFile);
+        boolean fileHasIds = columns.get(0).equalsIgnoreCase("id");
+        String select = "SELECT " + String.join(", ", columns) + " FROM " + table + " WHERE id >= ? AND id < ?";
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            RangeDigest ranges;
+            if (!fileHasIds) {
+                ranges = RangeDigest.single(fromId, toId);
+            } else if (idRanges != null) {
+                ranges = idRanges;
+            } else {
+                ranges = initialRanges();
+            }
+            RangeDigest tableDigest = digestTable(select, columns.size(), ranges, fileHasIds, executor);
+            RangeDigest fileDigest = digestFile(csvFile, columns.size(), ranges, fileHasIds, executor);
+            System.out.printf("Table %s: %,d rows, file %s: %,d rows (%.2f seconds)%n", table,
+                    tableDigest.totalCount(), csvFile.getName(), fileDigest.totalCount(),
+                    (System.nanoTime() - start) / 1e9);
+
+            List<Integer> mismatches = tableDigest.mismatches(fileDigest);
+            if (mismatches.isEmpty()) {
+                return true;
+            }
+            if (!fileHasIds) {
+                System.out.println("Checksums differ; the file has no id column, so mismatching rows cannot be located");
+                return false;
+            }
+
+            // Narrow down while some mismatching range can still be split
+            while (true) {
+                RangeDigest narrowed = ranges.split(mismatches, split, maxReported);
+                if (narrowed == null) {
+                    break;
+                }
+                ranges = narrowed;
+                tableDigest = digestTable(select, columns.size(), ranges, true, executor);
+                fileDigest = digestFile(csvFile, columns.size(), ranges, true, executor);
+                mismatches = tableDigest.mismatches(fileDigest);
+            }
+            report(ranges, tableDigest, fileDigest, mismatches);
+            System.out.printf("Verification took %.2f seconds%n", (System.nanoTime() - start) / 1e9);
+            return false;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Splits the table's id range evenly, with open-ended ranges below and above it. */
+    private RangeDigest initialRanges() throws SQLException {
+        try (Connection conn = openConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT MIN(id), MAX(id) FROM " + table);
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            long min = rs.getLong(1);
+            long max = rs.getLong(2);
+            if (rs.wasNull()) {
+                return RangeDigest.single(Long.MIN_VALUE, Long.MAX_VALUE);
+            }
+            return evenRanges(min, max + 1, true);
+        }
+    }
+
+    /**
+     * Splits {@code [from, to)} into up to {@code initialRanges} even ranges, optionally
+     * with open-ended ranges below and above it.
+     */
+    private RangeDigest evenRanges(long from, long to, boolean openEnded) {
+        long span = to - from;
+        int count = (int) Math.max(1, Math.min(initialRanges, span));
+        int outer = openEnded ? 1 : 0;
+        long[] lows = new long[count + 2 * outer];
+        long[] highs = new long[count + 2 * outer];
+        if (openEnded) {
+            lows[0] = Long.MIN_VALUE;
+            highs[0] = from;
+            lows[count + 1] = to;
+            highs[count + 1] = Long.MAX_VALUE;
+        }
+        for (int i = 0; i < count; i++) {
+            lows[i + outer] = from + span * i / count;
+            highs[i + outer] = from + span * (i + 1) / count;
+        }
+        return new RangeDigest(lows, highs);
+    }
+
+    private RangeDigest digestTable(String select, int columns, RangeDigest ranges, boolean withIds,
+                                    ExecutorService executor)
+            throws SQLException, InterruptedException {
+        RangeDigest total = ranges.emptyCopy();
+        List<Future<RangeDigest>> tasks = new ArrayList<>();
+        int perTask = (ranges.size() + threads - 1) / threads;
+        for (int first = 0; first < ranges.size(); first += perTask) {
+            int from = first;
+            int to = Math.min(ranges.size(), first + perTask);
+            tasks.add(executor.submit(() -> digestTableRanges(select, columns, ranges, from, to, withIds)));
+        }
+        for (Future<RangeDigest> task : tasks) {
+            try {
+                total.merge(task.get());
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof SQLException ? (SQLException) e.getCause()
+                        : new SQLException(e.getCause());
+            }
+        }
+        return total;
+    }
+
+    private RangeDigest digestTableRanges(String select, int columns, RangeDigest ranges, int from, int to,
+                                          boolean withIds) throws SQLException {
+        RangeDigest digest = ranges.emptyCopy();
+        try (Connection conn = openConnection();
+             PreparedStatement stmt = conn.prepareStatement(select)) {
+            for (int range = from; range < to; range++) {
+                stmt.setLong(1, ranges.lows[range]);
+                stmt.setLong(2, ranges.highs[range]);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        long hash = withIds ? HyperLogLog.hash(rs.getLong(1)) : 0;
+                        for (int column = withIds ? 2 : 1; column <= columns; column++) {
+                            String value = rs.getString(column);
+                            byte[] bytes = value == null ? new byte[0] : value.trim().getBytes(StandardCharsets.UTF_8);
+                            hash = combine(hash, bytes, 0, bytes.length);
+                        }
+                        digest.add(range, hash);
+                    }
+                }
+            }
+        }
+        return digest;
+    }
+
+    private RangeDigest digestFile(File csvFile, int columns, RangeDigest ranges, boolean withIds,
+                                   ExecutorService executor) throws IOException, InterruptedException {
+        long length = csvFile.length();
+        int chunks = threads * CHUNKS_PER_THREAD;
+        List<Future<RangeDigest>> tasks = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            long start = length * i / chunks;
+            long end = length * (i + 1) / chunks;
+            tasks.add(executor.submit(() -> digestFileChunk(csvFile, start, end, columns, ranges, withIds)));
+        }
+        RangeDigest total = ranges.emptyCopy();
+        for (Future<RangeDigest> task : tasks) {
+            try {
+                total.merge(task.get());
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                        : new IOException(e.getCause());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Hashes every line starting in {@code [start, end)}. Reading starts one byte early
+     * and skips through the first newline, so a line starting before {@code start}
+     * is left to the previous chunk and the first chunk skips the header.
+     */
+    private RangeDigest digestFileChunk(File csvFile, long start, long end, int columns, RangeDigest ranges,
+                                        boolean withIds) throws IOException {
+        RangeDigest digest = ranges.emptyCopy();
+        try (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            long position = Math.max(0, start - 1);
+            channel.position(position);
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+            byte[] line = new byte[256];
+            int lineLength = 0;
+            long lineStart = position;
+            boolean skipping = true;
+
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    position++;
+                    if (b != '\n') {
+                        if (!skipping) {
+                            if (lineLength == line.length) {
+                                line = Arrays.copyOf(line, line.length * 2);
+                            }
+                            line[lineLength++] = b;
+                        }
+                        continue;
+                    }
+                    if (!skipping) {
+                        digestLine(line, lineLength, columns, ranges, digest, withIds);
+                    }
+                    skipping = false;
+                    lineLength = 0;
+                    lineStart = position;
+                    if (lineStart >= end) {
+                        return digest;
+                    }
+                }
+                buffer.clear();
+            }
+            if (!skipping && lineLength > 0 && lineStart < end) {
+                digestLine(line, lineLength, columns, ranges, digest, withIds);
+            }
+        }
+        return digest;
+    }
+
+    /**
+     * Hashes one line. A quoted field is unquoted in place, which only ever shortens it,
+     * so the hash sees the same bytes as the table value.
+     */
+    private static void digestLine(byte[] line, int length, int columns, RangeDigest ranges, RangeDigest digest,
+                                   boolean withIds) {
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        if (length == 0) {
+            return;
+        }
+        int field = 0;
+        long hash = 0;
+        long id = 0;
+        int i = 0;
+        while (i <= length) {
+            int from = i;
+            int to;
+            if (i < length && line[i] == '"') {
+                to = i++;
+                while (i < length) {
+                    if (line[i] == '"') {
+                        if (i + 1 < length && line[i + 1] == '"') {
+                            line[to++] = '"';
+                            i += 2;
+                            continue;
+                        }
+                        i++;
+                        break;
+                    }
+                    line[to++] = line[i++];
+                }
+                while (i < length && line[i] != ',') {
+                    i++;
+                }
+            } else {
+                while (i < length && line[i] != ',') {
+                    i++;
+                }
+                to = i;
+            }
+            if (withIds && field == 0) {
+                id = parseLong(line, from, to);
+                hash = HyperLogLog.hash(id);
+            } else if (field < columns) {
+                // Same as String.trim() on the table side: strip bytes up to U+0020, which in
+                // UTF-8 only ever stand for those characters
+                while (from < to && (line[from] & 0xFF) <= ' ') {
+                    from++;
+                }
+                while (to > from && (line[to - 1] & 0xFF) <= ' ') {
+                    to--;
+                }
+                hash = combine(hash, line, from, to - from);
+            }
+            field++;
+            i++;
+        }
+        int range = withIds ? ranges.find(id) : 0;
+        if (range >= 0) {
+            digest.add(range, hash);
+        }
+    }
+
+    private static long parseLong(byte[] bytes, int from, int to) {
+        long value = 0;
+        boolean negative = false;
+        for (int i = from; i < to; i++) {
+            byte b = bytes[i];
+            if (b == '-') {
+                negative = true;
+            } else if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+            }
+        }
+        return negative ? -value : value;
+    }
+
+    /** Folds one field's UTF-8 bytes into a row hash. */
+    private static long combine(long hash, byte[] bytes, int from, int length) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = from; i < from + length; i++) {
+            h ^= bytes[i] & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        return HyperLogLog.hash(hash * 31 + h + length);
+    }
+
+    private void report(RangeDigest ranges, RangeDigest tableDigest, RangeDigest fileDigest, List<Integer> mismatches) {
+        System.out.printf("%d mismatching id ranges%s:%n", mismatches.size(),
+                mismatches.size() > maxReported ? ", showing the first " + maxReported : "");
+        for (int i = 0; i < Math.min(maxReported, mismatches.size()); i++) {
+            int range = mismatches.get(i);
+            String label;
+            if (ranges.lows[range] == Long.MIN_VALUE) {
+                label = "ids below " + ranges.highs[range];
+            } else if (ranges.highs[range] == Long.MAX_VALUE) {
+                label = "ids from " + ranges.lows[range];
+            } else if (ranges.highs[range] - ranges.lows[range] == 1) {
+                label = "id " + ranges.lows[range];
+            } else {
+                label = "ids " + ranges.lows[range] + " to " + (ranges.highs[range] - 1);
+            }
+            System.out.printf("  %s: table %,d rows, file %,d rows%s%n", label, tableDigest.counts[range],
+                    fileDigest.counts[range],
+                    tableDigest.counts[range] == fileDigest.counts[range] ? " (contents differ)" : "");
+        }
+    }
+
+    /** Returns the column names of the file's header, unquoted. */
+    private static List<String> readHeader(File csvFile) throws IOException {
+        String header;
+        try (BufferedReader reader = Files.newBufferedReader(csvFile.toPath())) {
+            header = reader.readLine();
+        }
+        if (header == null) {
+            throw new IOException(csvFile + " has no header line");
+        }
+        List<String> columns = new ArrayList<>();
+        for (String name : header.split(",", -1)) {
+            String column = name.trim();
+            if (column.length() >= 2 && column.startsWith("\"") && column.endsWith("\"")) {
+                column = column.substring(1, column.length() - 1).trim();
+            }
+            // The names become part of the table query
+            if (!COLUMN_NAME.matcher(column).matches()) {
+                throw new IOException("Header column '" + name + "' of " + csvFile + " is not a column name");
+            }
+            columns.add(column);
+        }
+        return columns;
+    }
+
+    private Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(properties.getProperty("db.url"),
+                properties.getProperty("db.user"), properties.getProperty("db.password"));
+    }
+
+    /** Row counts and hash sums over a sorted list of disjoint id ranges {@code [low, high)}. */
+    private static class RangeDigest {
+        final long[] lows;
+        final long[] highs;
+        final long[] counts;
+        final long[] sums;
+
+        RangeDigest(long[] lows, long[] highs) {
+            this.lows = lows;
+            this.highs = highs;
+            this.counts = new long[lows.length];
+            this.sums = new long[lows.length];
+        }
+
+        static RangeDigest single(long low, long high) {
+            return new RangeDigest(new long[] {low}, new long[] {high});
+        }
+
+        int size() {
+            return lows.length;
+        }
+
+        RangeDigest emptyCopy() {
+            return new RangeDigest(lows, highs);
+        }
+
+        void add(int range, long hash) {
+            counts[range]++;
+            sums[range] += hash;
+        }
+
+        void merge(RangeDigest other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+                sums[i] += other.sums[i];
+            }
+        }
+
+        long totalCount() {
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            return total;
+        }
+
+        /** Returns the index of the range holding the id, or -1 if none does. */
+        int find(long id) {
+            int low = 0;
+            int high = lows.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (id < lows[mid]) {
+                    high = mid - 1;
+                } else if (id >= highs[mid]) {
+                    low = mid + 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        List<Integer> mismatches(RangeDigest other) {
+            List<Integer> result = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != other.counts[i] || sums[i] != other.sums[i]) {
+                    result.add(i);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns the given ranges with the splittable ones split into {@code parts},
+         * keeping at most {@code limit} ranges, or {@code null} if none can be split.
+         */
+        RangeDigest split(List<Integer> ranges, int parts, int limit) {
+            List<long[]> result = new ArrayList<>();
+            boolean splitAny = false;
+            for (int i = 0; i < Math.min(limit, ranges.size()); i++) {
+                int range = ranges.get(i);
+                long low = lows[range];
+                long high = highs[range];
+                boolean openEnded = low == Long.MIN_VALUE || high == Long.MAX_VALUE;
+                if (openEnded || high - low <= 1) {
+                    result.add(new long[] {low, high});
+                    continue;
+                }
+                long width = high - low;
+                int count = (int) Math.min(parts, width);
+                for (int part = 0; part < count; part++) {
+                    result.add(new long[] {low + width * part / count, low + width * (part + 1) / count});
+                }
+                splitAny = true;
+            }
+            if (!splitAny) {
+                return null;
+            }
+            long[] newLows = new long[result.size()];
+            long[] newHighs = new long[result.size()];
+            for (int i = 0; i < result.size(); i++) {
+                newLows[i] = result.get(i)[0];
+                newHighs[i] = result.get(i)[1];
+            }
+            return new RangeDigest(newLows, newHighs);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.datagenerator;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed-capacity batch of rows stored column by column.
+ *
+ * <p>Ids and the optional integer column (such as an age) live in primitive arrays.
+ * All text fields share one {@code char[]}; each field is located by the end offset
+ * stored in {@link #textEnds}, its start being the end of the field before it.
+ * Rows are appended in order: {@link #addRow} followed by exactly one
+ * {@link #addText} per text column.</p>
+ *
+ * <p>Batches are meant to be reused through a {@link RowBatchPool}. Once the char
+ * storage has grown to fit a typical batch, filling and reading a batch allocates
+ * nothing. A batch handed to several consumers is reference counted with
+ * {@link #retain} and {@link #release} and goes back to its pool after the last
+ * consumer is done with it.</p>
+ */
+public class RowBatch {
+    private static final int INITIAL_CHARS_PER_FIELD = 16;
+
+    private final int capacity;
+    private final int textColumns;
+    private final long[] ids;
+    private final int[] ints;
+    private final int[] textEnds;
+    private final AtomicInteger references = new AtomicInteger();
+    private final RowBatchPool pool;
+    private char[] chars;
+    private int size;
+    private int fieldCount;
+    private int charLength;
+
+    /**
+     * Constructs an unpooled batch.
+     *
+     * @param capacity The maximum number of rows
+     * @param textColumns The number of text fields per row
+     */
+    public RowBatch(int capacity, int textColumns) {
+        this(capacity, textColumns, null);
+    }
+
+    RowBatch(int capacity, int textColumns, RowBatchPool pool) {
+        this.capacity = capacity;
+        this.textColumns = textColumns;
+        this.ids = new long[capacity];
+        this.ints = new int[capacity];
+        this.textEnds = new int[capacity * textColumns];
+        this.chars = new char[Math.max(16, capacity * textColumns * INITIAL_CHARS_PER_FIELD)];
+        this.pool = pool;
+    }
+
+    /**
+     * Starts a new row. Its text fields must be added next with {@link #addText}.
+     *
+     * @param id The row id
+     * @return The index of the new row
+     */
+    public int addRow(long id) {
+        if (size == capacity) {
+            throw new IllegalStateException("Row batch is full (" + capacity + " rows)");
+        }
+        if (fieldCount != size * textColumns) {
+            throw new IllegalStateException("Previous row has " + (fieldCount - (size - 1) * textColumns)
+                    + " of " + textColumns + " text fields");
+        }
+        ids[size] = id;
+        ints[size] = 0;
+        return size++;
+    }
+
+    /**
+     * Appends the next text field of the current row.
+     *
+     * @param value The field value; {@code null} is stored as an empty field
+     */
+    public void addText(String value) {
+        int length = value == null ? 0 : value.length();
+        ensureChars(charLength + length);
+        if (length > 0) {
+            value.getChars(0, length, chars, charLength);
+        }
+        charLength += length;
+        textEnds[fieldCount++] = charLength;
+    }
+
+    /**
+     * Appends the next text field of the current row from a char range.
+     *
+     * @param source The chars to copy
+     * @param offset The index of the first char
+     * @param length The number of chars
+     */
+    public void addText(char[] source, int offset, int length) {
+        ensureChars(charLength + length);
+        System.arraycopy(source, offset, chars, charLength, length);
+        charLength += length;
+        textEnds[fieldCount++] = charLength;
+    }
+
+    /**
+     * Appends a copy of one row of another batch with the same number of text columns.
+     *
+     * @param source The batch to copy from
+     * @param row The row index in the source batch
+     * @return The index of the new row
+     */
+    public int addRowFrom(RowBatch source, int row) {
+        int index = addRow(source.getId(row));
+        ints[index] = source.getInt(row);
+        for (int column = 0; column < textColumns; column++) {
+            addText(source.chars, source.getTextStart(row, column), source.getTextLength(row, column));
+        }
+        return index;
+    }
+
+    public void setInt(int row, int value) {
+        ints[row] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getTextColumns() {
+        return textColumns;
+    }
+
+    public long getId(int row) {
+        return ids[row];
+    }
+
+    public int getInt(int row) {
+        return ints[row];
+    }
+
+    /**
+     * Returns the shared char storage. Use it together with {@link #getTextStart}
+     * and {@link #getTextLength}; the array may be replaced when the batch grows.
+     *
+     * @return The char storage of all text fields
+     */
+    public char[] getChars() {
+        return chars;
+    }
+
+    public int getTextStart(int row, int column) {
+        int field = row * textColumns + column;
+        return field == 0 ? 0 : textEnds[field - 1];
+    }
+
+    public int getTextLength(int row, int column) {
+        return textEnds[row * textColumns + column] - getTextStart(row, column);
+    }
+
+    /**
+     * Materializes one text field as a {@code String}, for APIs such as JDBC that need one.
+     *
+     * @param row The row index
+     * @param column The text column index
+     * @return The field value
+     */
+    public String getText(int row, int column) {
+        int start = getTextStart(row, column);
+        return new String(chars, start, textEnds[row * textColumns + column] - start);
+    }
+
+    /**
+     * Compares a text column of two rows of this batch char by char.
+     *
+     * @param row1 The first row
+     * @param row2 The second row
+     * @param column The text column to compare
+     * @return A negative number, zero or a positive number as the first field sorts before, equal to or after the second
+     */
+    public int compareText(int row1, int row2, int column) {
+        return compareText(row1, this, row2, column);
+    }
+
+    /**
+     * Compares a text column of a row of this batch with the same column of a row of another batch.
+     *
+     * @param row The row of this batch
+     * @param other The batch holding the other row, which may be this batch
+     * @param otherRow The row of the other batch
+     * @param column The text column to compare
+     * @return A negative number, zero or a positive number as this field sorts before, equal to or after the other
+     */
+    public int compareText(int row, RowBatch other, int otherRow, int column) {
+        int start1 = getTextStart(row, column);
+        int length1 = getTextLength(row, column);
+        int start2 = other.getTextStart(otherRow, column);
+        int length2 = other.getTextLength(otherRow, column);
+        char[] otherChars = other.chars;
+        int length = Math.min(length1, length2);
+        for (int i = 0; i < length; i++) {
+            int diff = chars[start1 + i] - otherChars[start2 + i];
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length1 - length2;
+    }
+
+    /**
+     * Returns the number of bytes {@link #writeTo} needs for this batch.
+     *
+     * @return The serialized size in bytes
+     */
+    public int serializedSize() {
+        return 8 + size * (8 + 4) + fieldCount * 4 + charLength * 2;
+    }
+
+    /**
+     * Serializes all rows at the buffer's position, which must have
+     * {@link #serializedSize()} bytes remaining.
+     *
+     * @param buffer The destination buffer
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(size);
+        buffer.putInt(textColumns);
+        // Bulk copies through views; the views do not move the buffer's own position
+        buffer.asLongBuffer().put(ids, 0, size);
+        buffer.position(buffer.position() + size * 8);
+        buffer.asIntBuffer().put(ints, 0, size);
+        buffer.position(buffer.position() + size * 4);
+        buffer.asIntBuffer().put(textEnds, 0, fieldCount);
+        buffer.position(buffer.position() + fieldCount * 4);
+        buffer.asCharBuffer().put(chars, 0, charLength);
+        buffer.position(buffer.position() + charLength * 2);
+    }
+
+    /**
+     * Replaces the content of this batch with rows serialized by {@link #writeTo}.
+     *
+     * @param buffer The source buffer, positioned at the start of a serialized batch
+     */
+    public void readFrom(ByteBuffer buffer) {
+        int rows = buffer.getInt();
+        int columns = buffer.getInt();
+        if (rows > capacity || columns != textColumns) {
+            throw new IllegalStateException("Cannot read " + rows + " rows of " + columns
+                    + " text columns into a batch of " + capacity + " rows of " + textColumns);
+        }
+        size = rows;
+        fieldCount = rows * columns;
+        buffer.asLongBuffer().get(ids, 0, size);
+        buffer.position(buffer.position() + size * 8);
+        buffer.asIntBuffer().get(ints, 0, size);
+        buffer.position(buffer.position() + size * 4);
+        buffer.asIntBuffer().get(textEnds, 0, fieldCount);
+        buffer.position(buffer.position() + fieldCount * 4);
+        charLength = fieldCount == 0 ? 0 : textEnds[fieldCount - 1];
+        ensureChars(charLength);
+        buffer.asCharBuffer().get(chars, 0, charLength);
+        buffer.position(buffer.position() + charLength * 2);
+    }
+
+    /** Removes all rows while keeping the allocated storage. */
+    public void clear() {
+        size = 0;
+        fieldCount = 0;
+        charLength = 0;
+    }
+
+    /**
+     * Sets the number of consumers that must {@link #release} this batch before
+     * it returns to its pool.
+     *
+     * @param consumers The number of consumers
+     */
+    public void retain(int consumers) {
+        references.set(consumers);
+    }
+
+    /**
+     * Signals that one consumer is done with this batch. The last release clears the
+     * batch and returns it to its pool; unpooled batches are left untouched.
+     *
+     * @throws IllegalStateException If a pooled batch is released more often than it
+     *         was retained, since it may already have been handed out again
+     */
+    public void release() {
+        int remaining = references.decrementAndGet();
+        if (pool == null) {
+            return;
+        }
+        if (remaining < 0) {
+            throw new IllegalStateException("Batch released more often than retained");
+        }
+        if (remaining == 0) {
+            clear();
+            pool.recycle(this);
+        }
+    }
+
+    private void ensureChars(int required) {
+        if (required > chars.length) {
+            char[] grown = new char[Math.max(required, chars.length * 2)];
+            System.arraycopy(chars, 0, grown, 0, charLength);
+            chars = grown;
+        }
+    }
+}
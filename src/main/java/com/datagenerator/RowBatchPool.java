@@ -0,0 +1,48 @@
+package com.datagenerator;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A pool of {@link RowBatch} instances with the same shape.
+ * {@link #acquire()} never blocks: it allocates a new batch when the pool is empty,
+ * and recycled batches beyond {@code maxPooled} are left to the garbage collector.
+ * Callers that bound the number of batches in flight (for example with bounded queues)
+ * therefore reach a steady state in which no batch is allocated at all.
+ */
+public class RowBatchPool {
+    private final int batchCapacity;
+    private final int textColumns;
+    private final BlockingQueue<RowBatch> free;
+
+    /**
+     * Constructs a new pool.
+     *
+     * @param batchCapacity The number of rows per batch
+     * @param textColumns The number of text fields per row
+     * @param maxPooled The maximum number of idle batches kept for reuse
+     */
+    public RowBatchPool(int batchCapacity, int textColumns, int maxPooled) {
+        this.batchCapacity = batchCapacity;
+        this.textColumns = textColumns;
+        this.free = new ArrayBlockingQueue<>(Math.max(1, maxPooled));
+    }
+
+    /**
+     * Returns an empty batch, reusing an idle one when available.
+     *
+     * @return An empty batch that returns to this pool on its last release
+     */
+    public RowBatch acquire() {
+        RowBatch batch = free.poll();
+        if (batch == null) {
+            batch = new RowBatch(batchCapacity, textColumns, this);
+        }
+        batch.retain(1);
+        return batch;
+    }
+
+    void recycle(RowBatch batch) {
+        free.offer(batch);
+    }
+}
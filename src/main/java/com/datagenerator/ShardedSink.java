@@ -0,0 +1,262 @@
+package com.datagenerator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spreads rows over several databases and/or tables.
+ *
+ * <p>Every combination of a JDBC url and a table suffix is one shard. Each row is routed
+ * by a hash of its id or by the id range it falls in, copied into the shard's current
+ * batch, and full batches are handed to that shard's own channel and pool of
+ * {@link JdbcSink} workers. Shards therefore load in parallel, and throughput grows with
+ * the number of targets until generation becomes the bottleneck.</p>
+ *
+ * <p>The sink itself only routes, so it is registered in a {@link FanOutPipeline} as a
+ * single worker. {@link #close()} flushes all shards, waits for their workers and checks
+ * the row count of every shard against the number of rows routed to it.</p>
+ */
+public class ShardedSink implements RecordSink {
+
+    /** How rows are assigned to shards. */
+    public enum Routing {
+        /** By a hash of the id; spreads rows evenly whatever the id range. */
+        HASH,
+        /** By contiguous id ranges; each shard holds one slice of the ids. */
+        RANGE
+    }
+
+    private final List<Shard> shards = new ArrayList<>();
+    private final Routing routing;
+    private final String user;
+    private final String password;
+    private final long totalRecords;
+    private final int batchSize;
+    private final long firstId;
+
+    /**
+     * Connects to every shard, creates its table and starts its workers.
+     *
+     * @param urls The JDBC urls of the target databases
+     * @param baseTable The table name the suffixes are appended to
+     * @param tableSuffixes The table suffixes; use a single empty suffix for one table per database
+     * @param user The database user for all targets
+     * @param password The database password for all targets
+     * @param routing How rows are assigned to shards
+     * @param totalRecords The number of rows that will be written, used for range routing
+     * @param batchSize The number of rows per shard batch
+     * @param workersPerShard The number of connections writing to each shard
+     * @param queueCapacity The number of batches each shard may have pending
+     * @throws SQLException If a shard cannot be prepared; workers already started are
+     *         stopped and their connections closed first
+     */
+    public ShardedSink(List<String> urls, String baseTable, List<String> tableSuffixes, String user,
+                       String password, Routing routing, long totalRecords, int batchSize,
+                       int workersPerShard, int queueCapacity) throws SQLException {
+        this.routing = routing;
+        this.user = user;
+        this.password = password;
+        this.totalRecords = totalRecords;
+        this.batchSize = batchSize;
+
+        long nextFreeId = 1;
+        for (String url : urls) {
+            for (String suffix : tableSuffixes) {
+                String table = baseTable + suffix;
+                try (Connection conn = DriverManager.getConnection(url, user, password)) {
+                    JdbcSink.createTable(conn, table);
+                    nextFreeId = Math.max(nextFreeId, JdbcSink.nextId(conn, table));
+                }
+                shards.add(new Shard(shards.size(), url, table, queueCapacity));
+            }
+        }
+        this.firstId = nextFreeId;
+
+        try {
+            for (Shard shard : shards) {
+                for (int i = 0; i < workersPerShard; i++) {
+                    Connection conn = DriverManager.getConnection(shard.url, user, password);
+                    JdbcSink sink;
+                    try {
+                        sink = new JdbcSink(conn, shard.table);
+                    } catch (SQLException e) {
+                        conn.close();
+                        throw e;
+                    }
+                    shard.start(sink, i);
+                }
+            }
+        } catch (SQLException e) {
+            // The workers are not daemon threads and would keep the JVM alive
+            try {
+                stopWorkers();
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                e.addSuppressed(interrupted);
+            }
+            throw e;
+        }
+        System.out.printf("Sharded sink: %d shards, %d workers each, %s routing%n",
+                shards.size(), workersPerShard, routing);
+    }
+
+    /**
+     * Returns the first id that is free in every shard. Generation must start here
+     * so that range routing and the final verification line up.
+     *
+     * @return The first id to generate
+     */
+    public long getFirstId() {
+        return firstId;
+    }
+
+    @Override
+    public void write(RowBatch batch) throws Exception {
+        for (int row = 0; row < batch.size(); row++) {
+            Shard shard = shards.get(shardFor(batch.getId(row)));
+            if (shard.pending == null) {
+                shard.pending = shard.pool.acquire();
+            }
+            shard.pending.addRowFrom(batch, row);
+            shard.rowsRouted++;
+            if (shard.pending.isFull()) {
+                shard.flush();
+            }
+        }
+        for (Shard shard : shards) {
+            if (shard.failure != null) {
+                throw new SQLException("Shard " + shard.table + " at " + shard.url + " failed", shard.failure);
+            }
+        }
+    }
+
+    /**
+     * Flushes all shards, waits for their workers and verifies the row counts.
+     *
+     * @throws InterruptedIOException If interrupted while waiting for the workers
+     * @throws SQLException If a row count cannot be read
+     */
+    @Override
+    public void close() throws IOException, SQLException {
+        try {
+            for (Shard shard : shards) {
+                shard.flush();
+            }
+            stopWorkers();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the shard workers");
+        }
+        verify();
+    }
+
+    /** Ends every shard's channel and waits for its workers, which close their sinks on exit. */
+    private void stopWorkers() throws InterruptedException {
+        for (Shard shard : shards) {
+            shard.channel.finish();
+        }
+        for (Shard shard : shards) {
+            for (Thread worker : shard.workers) {
+                worker.join();
+            }
+            shard.channel.close();
+        }
+    }
+
+    private int shardFor(long id) {
+        if (routing == Routing.RANGE) {
+            long offset = Math.min(Math.max(id - firstId, 0), totalRecords - 1);
+            return (int) (offset * shards.size() / totalRecords);
+        }
+        // Fibonacci hashing spreads consecutive ids evenly over the shards
+        long hash = (id * 0x9E3779B97F4A7C15L) >>> 32;
+        return (int) (hash % shards.size());
+    }
+
+    private void verify() throws SQLException {
+        long lastId = firstId + totalRecords - 1;
+        for (Shard shard : shards) {
+            try (Connection conn = DriverManager.getConnection(shard.url, user, password);
+                 PreparedStatement stmt = conn.prepareStatement(
+                         "SELECT COUNT(*) FROM " + shard.table + " WHERE id BETWEEN ? AND ?")) {
+                stmt.setLong(1, firstId);
+                stmt.setLong(2, lastId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    long count = rs.next() ? rs.getLong(1) : 0;
+                    System.out.printf("Shard %d (%s at %s): routed %d, written %d, verified %d%s%n",
+                            shard.index, shard.table, shard.url, shard.rowsRouted, shard.rowsWritten.get(),
+                            count, count == shard.rowsRouted ? "" : " - MISMATCH");
+                }
+            }
+        }
+    }
+
+    /** One target table with its own channel and workers. */
+    private final class Shard {
+        private final int index;
+        private final String url;
+        private final String table;
+        private final BatchChannel channel;
+        private final RowBatchPool pool;
+        private final List<Thread> workers = new ArrayList<>();
+        private final AtomicLong rowsWritten = new AtomicLong();
+        private volatile Exception failure;
+        private RowBatch pending;
+        private long rowsRouted;
+
+        private Shard(int index, String url, String table, int queueCapacity) {
+            this.index = index;
+            this.url = url;
+            this.table = table;
+            this.channel = new QueueBatchChannel(queueCapacity);
+            this.pool = new RowBatchPool(batchSize, FanOutPipeline.PERSON_TEXT_COLUMNS, queueCapacity + 2);
+        }
+
+        private void start(JdbcSink sink, int workerId) {
+            Thread worker = new Thread(() -> drain(sink), "Shard-" + index + "-Worker-" + workerId);
+            workers.add(worker);
+            worker.start();
+        }
+
+        private void flush() throws InterruptedException {
+            if (pending != null && !pending.isEmpty()) {
+                channel.put(pending);
+            } else if (pending != null) {
+                pending.release();
+            }
+            pending = null;
+        }
+
+        private void drain(JdbcSink sink) {
+            try (sink) {
+                RowBatch batch;
+                while ((batch = channel.take()) != null) {
+                    try {
+                        // Keep draining after a failure so routing never blocks on a dead shard
+                        if (failure == null) {
+                            sink.write(batch);
+                            rowsWritten.addAndGet(batch.size());
+                        }
+                    } catch (Exception e) {
+                        failure = e;
+                        System.out.println("Error in shard " + table + " at " + url + ": " + e.getMessage());
+                    } finally {
+                        batch.release();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (SQLException e) {
+                System.out.println("Error closing shard connection: " + e.getMessage());
+            }
+        }
+    }
+}
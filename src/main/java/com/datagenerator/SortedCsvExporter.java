@@ -0,0 +1,400 @@
+package com.datagenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exports generated person rows to a CSV file sorted by one or more text columns,
+ * using an external merge sort so memory use does not depend on the row count.
+ *
+ * <p>Every thread repeatedly claims the next {@code runRows} ids, generates those rows
+ * with {@link PersonFactory}, sorts them in memory and writes them to a temporary run
+ * file as serialized {@link RowBatch} chunks. While there are more than {@code fanIn}
+ * runs, groups of {@code fanIn} runs are merged into longer runs on all threads. A
+ * final k-way merge then writes the CSV in the {@link CsvSink} layout. Ties are
+ * broken by id, so the output is the same for any thread count.</p>
+ *
+ * <p>At most {@code threads * runRows} rows are held while generating, and a merge
+ * holds one chunk of {@value #CHUNK_ROWS} rows per input run.</p>
+ */
+public class SortedCsvExporter {
+    private static final int CHUNK_ROWS = 4096;
+    private static final String[] COLUMN_NAMES = {"first_name", "last_name", "email"};
+
+    private final long firstId;
+    private final long totalRecords;
+    private final int[] sortColumns;
+    private final int runRows;
+    private final int threads;
+    private final int fanIn;
+    private final File tmpDirectory;
+
+    /**
+     * Constructs a new exporter.
+     *
+     * @param firstId The id of the first generated row
+     * @param totalRecords The number of rows to export
+     * @param sortColumns The text columns to sort by, most significant first
+     * @param runRows The number of rows each thread sorts in memory at a time
+     * @param threads The number of threads generating, sorting and merging
+     * @param fanIn The maximum number of runs merged at once
+     * @param tmpDirectory The directory for run files
+     */
+    public SortedCsvExporter(long firstId, long totalRecords, int[] sortColumns, int runRows,
+                             int threads, int fanIn, File tmpDirectory) {
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("Merge fan-in must be at least 2: " + fanIn);
+        }
+        this.firstId = firstId;
+        this.totalRecords = totalRecords;
+        this.sortColumns = sortColumns;
+        this.runRows = runRows;
+        this.threads = threads;
+        this.fanIn = fanIn;
+        this.tmpDirectory = tmpDirectory;
+    }
+
+    /**
+     * Runs a sorted export configured by the {@code sort.*} settings.
+     *
+     * @param args {@code [propertiesFile]} overriding {@code application.properties}
+     */
+    public static void main(String[] args) {
+        Properties properties = AppProperties.load(args.length > 0 ? args[0] : null);
+        if (properties == null) {
+            return;
+        }
+        File tmpDirectory = new File(properties.getProperty("sort.tmp.dir", System.getProperty("java.io.tmpdir")));
+        tmpDirectory.mkdirs();
+        String outputPath = properties.getProperty("sort.output.path", "csv/people.sorted.csv");
+        new File(outputPath).getAbsoluteFile().getParentFile().mkdirs();
+
+        SortedCsvExporter exporter = new SortedCsvExporter(
+                Long.parseLong(properties.getProperty("sort.firstId", "1")),
+                Long.parseLong(properties.getProperty("sort.records", "1000000")),
+                parseSortColumns(properties.getProperty("sort.by", "last_name,first_name")),
+                Integer.parseInt(properties.getProperty("sort.run.rows", "100000")),
+                Integer.parseInt(properties.getProperty("sort.threads",
+                        String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                Integer.parseInt(properties.getProperty("sort.merge.fanIn", "64")),
+                tmpDirectory);
+        long start = System.nanoTime();
+        try {
+            exporter.export(outputPath);
+            System.out.printf("Sorted export written to %s in %.2f seconds%n",
+                    outputPath, (System.nanoTime() - start) / 1e9);
+        } catch (IOException e) {
+            System.out.println("Error during sorted export: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Parses a comma-separated list of column names into text column indexes.
+     *
+     * @param spec Column names such as {@code last_name,first_name}
+     * @return The column indexes in the same order
+     */
+    public static int[] parseSortColumns(String spec) {
+        String[] names = spec.split(",");
+        int[] columns = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            columns[i] = -1;
+            for (int column = 0; column < COLUMN_NAMES.length; column++) {
+                if (COLUMN_NAMES[column].equalsIgnoreCase(names[i].trim())) {
+                    columns[i] = column;
+                }
+            }
+            if (columns[i] < 0) {
+                throw new IllegalArgumentException("Unknown sort column: " + names[i].trim());
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Generates, sorts and writes all rows.
+     *
+     * @param outputPath The CSV file to write
+     * @throws IOException If a run file or the output cannot be written
+     * @throws InterruptedException If interrupted while waiting for the threads
+     */
+    public void export(String outputPath) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<File> runs = Collections.synchronizedList(new ArrayList<>());
+        try {
+            AtomicLong nextId = new AtomicLong(firstId);
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                tasks.add(executor.submit(() -> {
+                    generateRuns(nextId, runs);
+                    return null;
+                }));
+            }
+            await(tasks);
+            System.out.printf("Wrote %d sorted runs of up to %,d rows%n", runs.size(), runRows);
+
+            List<File> current = new ArrayList<>(runs);
+            while (current.size() > fanIn) {
+                List<Future<File>> merges = new ArrayList<>();
+                for (int from = 0; from < current.size(); from += fanIn) {
+                    List<File> group = new ArrayList<>(current.subList(from, Math.min(current.size(), from + fanIn)));
+                    merges.add(executor.submit(() -> mergeToRun(group, runs)));
+                }
+                current = new ArrayList<>();
+                for (Future<File> merge : merges) {
+                    current.add(await(merge));
+                }
+                System.out.printf("Merge pass: %d runs left%n", current.size());
+            }
+
+            try (CsvSink output = new CsvSink(outputPath)) {
+                merge(current, output);
+            }
+        } finally {
+            executor.shutdownNow();
+            for (File run : runs) {
+                run.delete();
+            }
+        }
+    }
+
+    private void generateRuns(AtomicLong nextId, List<File> runs) throws IOException {
+        long endId = firstId + totalRecords;
+        PersonFactory persons = new PersonFactory();
+        RowBatch rows = new RowBatch(runRows, FanOutPipeline.PERSON_TEXT_COLUMNS);
+        RowBatch chunk = new RowBatch(CHUNK_ROWS, FanOutPipeline.PERSON_TEXT_COLUMNS);
+        int[] order = new int[runRows];
+        int[] scratch = new int[runRows];
+
+        long start;
+        while ((start = nextId.getAndAdd(runRows)) < endId) {
+            rows.clear();
+            long end = Math.min(endId, start + runRows);
+            for (long id = start; id < end; id++) {
+                persons.addPerson(rows, id);
+            }
+            for (int i = 0; i < rows.size(); i++) {
+                order[i] = i;
+            }
+            sort(rows, order, scratch, 0, rows.size());
+
+            File run = newRunFile(runs);
+            try (RunWriter writer = new RunWriter(run)) {
+                chunk.clear();
+                for (int i = 0; i < rows.size(); i++) {
+                    chunk.addRowFrom(rows, order[i]);
+                    if (chunk.isFull()) {
+                        writer.write(chunk);
+                        chunk.clear();
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    writer.write(chunk);
+                }
+            }
+        }
+    }
+
+    /** Merges runs into a new run file and deletes the inputs. */
+    private File mergeToRun(List<File> inputs, List<File> runs) throws IOException {
+        File run = newRunFile(runs);
+        try (RunWriter writer = new RunWriter(run)) {
+            merge(inputs, writer);
+        }
+        for (File input : inputs) {
+            input.delete();
+        }
+        return run;
+    }
+
+    /** K-way merge of sorted runs into a sink, one output chunk at a time. */
+    private void merge(List<File> inputs, RecordSink output) throws IOException {
+        PriorityQueue<RunReader> heads = new PriorityQueue<>(Math.max(1, inputs.size()),
+                (a, b) -> compare(a.batch, a.row, b.batch, b.row));
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (File input : inputs) {
+                RunReader reader = new RunReader(input);
+                readers.add(reader);
+                if (reader.advance()) {
+                    heads.add(reader);
+                }
+            }
+            RowBatch chunk = new RowBatch(CHUNK_ROWS, FanOutPipeline.PERSON_TEXT_COLUMNS);
+            RunReader reader;
+            while ((reader = heads.poll()) != null) {
+                chunk.addRowFrom(reader.batch, reader.row);
+                if (chunk.isFull()) {
+                    output.write(chunk);
+                    chunk.clear();
+                }
+                if (reader.advance()) {
+                    heads.add(reader);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                output.write(chunk);
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        } finally {
+            for (RunReader open : readers) {
+                open.close();
+            }
+        }
+    }
+
+    private int compare(RowBatch batch1, int row1, RowBatch batch2, int row2) {
+        for (int column : sortColumns) {
+            int result = batch1.compareText(row1, batch2, row2, column);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Long.compare(batch1.getId(row1), batch2.getId(row2));
+    }
+
+    /** Stable merge sort of row indexes, avoiding boxed comparisons. */
+    private void sort(RowBatch rows, int[] order, int[] scratch, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        sort(rows, order, scratch, from, mid);
+        sort(rows, order, scratch, mid, to);
+        if (compare(rows, order[mid - 1], rows, order[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, scratch, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && compare(rows, scratch[left], rows, scratch[right]) <= 0)) {
+                order[i] = scratch[left++];
+            } else {
+                order[i] = scratch[right++];
+            }
+        }
+    }
+
+    private File newRunFile(List<File> runs) throws IOException {
+        File run = File.createTempFile("sort-run-", ".bin", tmpDirectory);
+        run.deleteOnExit();
+        runs.add(run);
+        return run;
+    }
+
+    private static void await(List<Future<?>> tasks) throws IOException, InterruptedException {
+        for (Future<?> task : tasks) {
+            await(task);
+        }
+    }
+
+    private static <T> T await(Future<T> task) throws IOException, InterruptedException {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /** Writes a run as length-prefixed serialized batches. */
+    private static class RunWriter implements RecordSink {
+        private final FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+        RunWriter(File file) throws IOException {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        @Override
+        public void write(RowBatch batch) throws IOException {
+            int size = batch.serializedSize();
+            if (buffer.capacity() < size + 4) {
+                buffer = ByteBuffer.allocate(size + 4);
+            }
+            buffer.clear();
+            buffer.putInt(size);
+            batch.writeTo(buffer);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /** Reads a run back one chunk at a time, tracking the current row. */
+    private static class RunReader {
+        private final FileChannel channel;
+        private final ByteBuffer header = ByteBuffer.allocate(4);
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        final RowBatch batch = new RowBatch(CHUNK_ROWS, FanOutPipeline.PERSON_TEXT_COLUMNS);
+        int row = -1;
+
+        RunReader(File file) throws IOException {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+
+        /** Moves to the next row, loading the next chunk when needed; false at the end of the run. */
+        boolean advance() throws IOException {
+            if (++row < batch.size()) {
+                return true;
+            }
+            header.clear();
+            if (!readFully(header)) {
+                return false;
+            }
+            int size = header.getInt(0);
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocate(size);
+            }
+            buffer.clear().limit(size);
+            if (!readFully(buffer)) {
+                throw new IOException("Truncated run file");
+            }
+            buffer.flip();
+            batch.readFrom(buffer);
+            row = 0;
+            return batch.size() > 0;
+        }
+
+        private boolean readFully(ByteBuffer target) throws IOException {
+            while (target.hasRemaining()) {
+                if (channel.read(target) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+}
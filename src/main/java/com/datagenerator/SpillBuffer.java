@@ -0,0 +1,350 @@
+package com.datagenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link BatchChannel} that lets generation run ahead of a stalled sink without
+ * growing the heap.
+ *
+ * <p>Batches are serialized into a FIFO of fixed-size segments. Segments are direct
+ * (off-heap) buffers until {@code maxOffHeapBytes} is allocated; after that new segments
+ * are memory-mapped temporary files in the spill directory, deleted once drained.
+ * Consumers read batches back in the order they were put, into batches from a small
+ * private pool. Drained direct segments are reused, so steady-state operation
+ * allocates neither heap nor direct memory. Drained spill files are unmapped and
+ * deleted right away rather than when the mapping is garbage collected.</p>
+ *
+ * <p>The lock is only held to reserve space and to publish it. Producers serialize
+ * into their reserved range, and create new segments, outside of it, so several
+ * generator threads can copy batches at once. A reserved range becomes visible to
+ * consumers once it and every range reserved before it are written.</p>
+ *
+ * <p>With a positive {@code maxTotalBytes} producers block once that many bytes are
+ * pending, which bounds disk usage; with zero the buffer only ever blocks on the disk.</p>
+ */
+public class SpillBuffer implements BatchChannel {
+    /** Default size of one buffer segment. */
+    public static final int DEFAULT_SEGMENT_BYTES = 8 * 1024 * 1024;
+
+    /** {@code sun.misc.Unsafe} and its {@code invokeCleaner}, or {@code null} if unavailable. */
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final long maxOffHeapBytes;
+    private final long maxTotalBytes;
+    private final int segmentBytes;
+    private final File spillDirectory;
+    private final RowBatchPool batchPool;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final ArrayDeque<ByteBuffer> freeDirectBuffers = new ArrayDeque<>();
+    /** Ranges in the order they were reserved, waiting to be written and published. */
+    private final ArrayDeque<Reservation> reservations = new ArrayDeque<>();
+    private long offHeapBytes;
+    private long pendingBytes;
+    private long spilledSegments;
+    private boolean finished;
+
+    /**
+     * Constructs a new spill buffer.
+     *
+     * @param batchCapacity The row capacity of the batches handed to consumers
+     * @param textColumns The number of text fields per row
+     * @param consumers The number of threads taking from this buffer
+     * @param maxOffHeapBytes The direct memory to use before spilling to files
+     * @param maxTotalBytes The pending bytes at which producers block, or 0 for no limit
+     * @param segmentBytes The size of one segment
+     * @param spillDirectory The directory for spill files
+     */
+    public SpillBuffer(int batchCapacity, int textColumns, int consumers, long maxOffHeapBytes,
+                       long maxTotalBytes, int segmentBytes, File spillDirectory) {
+        this.maxOffHeapBytes = maxOffHeapBytes;
+        this.maxTotalBytes = maxTotalBytes;
+        this.segmentBytes = segmentBytes;
+        this.spillDirectory = spillDirectory;
+        this.batchPool = new RowBatchPool(batchCapacity, textColumns, consumers + 1);
+    }
+
+    @Override
+    public void put(RowBatch batch) throws InterruptedException {
+        try {
+            Reservation reservation = reserve(batch.serializedSize());
+            try {
+                ByteBuffer target = reservation.segment.buffer.duplicate();
+                target.position(reservation.start);
+                batch.writeTo(target);
+            } finally {
+                publish(reservation);
+            }
+        } finally {
+            batch.release();
+        }
+    }
+
+    /** Claims {@code needed} bytes at the end of the tail segment, adding a segment if it is full. */
+    private Reservation reserve(int needed) throws InterruptedException {
+        lock.lock();
+        try {
+            while (maxTotalBytes > 0 && pendingBytes > 0 && pendingBytes + needed > maxTotalBytes) {
+                notFull.await();
+            }
+            // Counted now so other producers block on the bytes this one is about to write
+            pendingBytes += needed;
+            Segment tail = segments.peekLast();
+            while (tail == null || tail.buffer.capacity() - tail.reservedPosition < needed) {
+                Segment fresh;
+                try {
+                    fresh = newSegment(needed);
+                } catch (RuntimeException e) {
+                    pendingBytes -= needed;
+                    throw e;
+                }
+                tail = segments.peekLast();
+                if (tail != null && tail.buffer.capacity() - tail.reservedPosition >= needed) {
+                    // Another producer added a segment while the lock was released
+                    recycle(fresh);
+                } else {
+                    segments.addLast(fresh);
+                    tail = fresh;
+                }
+            }
+            Reservation reservation = new Reservation(tail, tail.reservedPosition, needed);
+            tail.reservedPosition += needed;
+            reservations.addLast(reservation);
+            return reservation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Marks a range as written and makes every written range at the head of the queue visible. */
+    private void publish(Reservation reservation) {
+        lock.lock();
+        try {
+            reservation.written = true;
+            boolean published = false;
+            while (!reservations.isEmpty() && reservations.peekFirst().written) {
+                Reservation head = reservations.removeFirst();
+                head.segment.writePosition = head.start + head.length;
+                published = true;
+            }
+            if (published) {
+                notEmpty.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public RowBatch take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                Segment head = segments.peekFirst();
+                if (head != null && head.readPosition < head.writePosition) {
+                    RowBatch batch = batchPool.acquire();
+                    head.buffer.position(head.readPosition);
+                    batch.readFrom(head.buffer);
+                    pendingBytes -= head.buffer.position() - head.readPosition;
+                    head.readPosition = head.buffer.position();
+                    notFull.signalAll();
+                    return batch;
+                }
+                boolean drained = head != null && head.readPosition == head.reservedPosition;
+                if (drained && segments.size() > 1) {
+                    // Fully drained and no longer written to
+                    segments.removeFirst();
+                    recycle(head);
+                    continue;
+                }
+                if (drained) {
+                    // The only segment is drained; start writing it from the beginning again
+                    head.readPosition = 0;
+                    head.writePosition = 0;
+                    head.reservedPosition = 0;
+                }
+                if (finished) {
+                    return null;
+                }
+                notEmpty.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void finish() {
+        lock.lock();
+        try {
+            finished = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            while (!segments.isEmpty()) {
+                recycle(segments.removeFirst());
+            }
+            offHeapBytes -= (long) freeDirectBuffers.size() * segmentBytes;
+            freeDirectBuffers.clear();
+            if (spilledSegments > 0) {
+                System.out.printf("Spill buffer: %d segments were spilled to %s%n",
+                        spilledSegments, spillDirectory);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of serialized bytes waiting to be taken.
+     *
+     * @return The pending bytes
+     */
+    public long getPendingBytes() {
+        lock.lock();
+        try {
+            return pendingBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a segment with room for {@code needed} bytes. Called with the lock held;
+     * the lock is released while memory is allocated or a spill file is created and mapped.
+     */
+    private Segment newSegment(int needed) {
+        int size = Math.max(segmentBytes, needed);
+        if (size == segmentBytes && !freeDirectBuffers.isEmpty()) {
+            ByteBuffer buffer = freeDirectBuffers.removeFirst();
+            buffer.clear();
+            return new Segment(buffer, null);
+        }
+        boolean offHeap = offHeapBytes + size <= maxOffHeapBytes;
+        if (offHeap) {
+            offHeapBytes += size;
+        } else {
+            spilledSegments++;
+        }
+        lock.unlock();
+        try {
+            if (offHeap) {
+                return new Segment(ByteBuffer.allocateDirect(size), null);
+            }
+            Path file = Files.createTempFile(spillDirectory.toPath(), "spill-", ".seg");
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            try {
+                return new Segment(channel.map(FileChannel.MapMode.READ_WRITE, 0, size), channel);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create spill segment in " + spillDirectory, e);
+        } finally {
+            lock.lock();
+        }
+    }
+
+    private void recycle(Segment segment) {
+        pendingBytes -= segment.reservedPosition - segment.readPosition;
+        if (segment.file != null) {
+            // Unmap before closing: the file is only deleted, and its disk space freed, once unmapped
+            unmap(segment.buffer);
+            try {
+                segment.file.close();
+            } catch (IOException e) {
+                System.out.println("Error deleting spill segment: " + e.getMessage());
+            }
+        } else if (segment.buffer.capacity() == segmentBytes) {
+            freeDirectBuffers.addLast(segment.buffer);
+        } else {
+            offHeapBytes -= segment.buffer.capacity();
+        }
+    }
+
+    /**
+     * Releases a mapping now instead of when the buffer is garbage collected. Java 11
+     * has no public API for this, so it goes through {@code sun.misc.Unsafe.invokeCleaner};
+     * if that is unavailable the mapping is left to the garbage collector. The buffer
+     * must not be touched afterwards.
+     */
+    private static void unmap(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            System.out.println("Could not unmap spill segment: " + e.getMessage());
+        }
+    }
+
+    private static final class Segment {
+        private final ByteBuffer buffer;
+        private final FileChannel file;
+        private int readPosition;
+        /** End of the bytes consumers may read. */
+        private int writePosition;
+        /** End of the bytes handed out to producers, written or not. */
+        private int reservedPosition;
+
+        private Segment(ByteBuffer buffer, FileChannel file) {
+            this.buffer = buffer;
+            this.file = file;
+        }
+    }
+
+    /** A range of a segment claimed by one producer. */
+    private static final class Reservation {
+        private final Segment segment;
+        private final int start;
+        private final int length;
+        private boolean written;
+
+        private Reservation(Segment segment, int start, int length) {
+            this.segment = segment;
+            this.start = start;
+            this.length = length;
+        }
+    }
+}
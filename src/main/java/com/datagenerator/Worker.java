@@ -0,0 +1,178 @@
+package com.datagenerator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Properties;
+
+/**
+ * Generates and inserts the id ranges handed out by a {@link Coordinator}.
+ *
+ * <p>Each of the {@code dist.worker.threads} threads opens its own coordinator session
+ * and database connection, and inserts its current range in id order, committing and
+ * reporting progress after every batch. Before each commit it asks the coordinator
+ * whether it still holds the range and rolls the batch back if it gets no
+ * {@code GRANTED}, so a worker whose range was reassigned while it stalled never
+ * commits into it. Several worker processes, on one machine or many, can join the
+ * same coordinator at any time.</p>
+ *
+ * <p>A batch the database refuses because of its rows (see
+ * {@link BatchBisector#isCausedByData}) is rolled back and reported as {@code FAILED},
+ * and the session carries on with the next range; the coordinator decides whether the
+ * range is tried again. Any other error ends the session.</p>
+ */
+public class Worker {
+    private final String host;
+    private final int port;
+    private final Properties properties;
+    private final String table;
+    private final int batchSize;
+
+    public Worker(String host, int port, Properties properties) {
+        this.host = host;
+        this.port = port;
+        this.properties = properties;
+        this.table = properties.getProperty("dist.table", "try_tb");
+        this.batchSize = Integer.parseInt(properties.getProperty("dist.batchSize", "5000"));
+    }
+
+    /**
+     * Starts a worker process.
+     *
+     * @param args {@code [host] [port] [propertiesFile]}, defaulting to localhost and {@code dist.port}
+     */
+    public static void main(String[] args) {
+        Properties properties = AppProperties.load(args.length > 2 ? args[2] : null);
+        if (properties == null) {
+            return;
+        }
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1])
+                : Integer.parseInt(properties.getProperty("dist.port", "9450"));
+        int threads = Integer.parseInt(properties.getProperty("dist.worker.threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        Worker worker = new Worker(host, port, properties);
+        String processName = ManagementFactory.getRuntimeMXBean().getName();
+        Thread[] sessions = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            String name = processName + "-" + i;
+            sessions[i] = new Thread(() -> worker.runSession(name), "Worker-" + i);
+            sessions[i].start();
+        }
+        for (Thread session : sessions) {
+            try {
+                session.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        System.out.println("Worker " + processName + " finished");
+    }
+
+    /**
+     * Runs one coordinator session until the coordinator has no ranges left.
+     *
+     * @param name The worker name reported to the coordinator
+     */
+    public void runSession(String name) {
+        long rowsInserted = 0;
+        try (Socket socket = new Socket(host, port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+             JdbcSink sink = openSink()) {
+            out.println(Coordinator.HELLO + " " + name);
+            PersonFactory persons = new PersonFactory();
+            RowBatch batch = new RowBatch(batchSize, FanOutPipeline.PERSON_TEXT_COLUMNS);
+
+            String line;
+            ranges:
+            while ((line = in.readLine()) != null && line.startsWith(Coordinator.RANGE)) {
+                String[] parts = line.split(" ");
+                long end = Long.parseLong(parts[2]);
+                long nextId = resumePoint(sink.getConnection(), Long.parseLong(parts[1]), end);
+
+                while (nextId < end) {
+                    batch.clear();
+                    for (long id = nextId; id < end && !batch.isFull(); id++) {
+                        persons.addPerson(batch, id);
+                    }
+                    try {
+                        sink.insert(batch);
+                    } catch (SQLException e) {
+                        if (!BatchBisector.isCausedByData(e)) {
+                            throw e;
+                        }
+                        sink.rollback();
+                        System.out.println("Session " + name + " could not insert ids from " + nextId + ": "
+                                + e.getMessage());
+                        out.println(Coordinator.FAILED + " " + nextId);
+                        continue ranges;
+                    }
+                    out.println(Coordinator.LEASE + " " + nextId);
+                    String reply;
+                    try {
+                        reply = in.readLine();
+                    } catch (IOException e) {
+                        reply = null;
+                    }
+                    if (!Coordinator.GRANTED.equals(reply)) {
+                        sink.rollback();
+                        throw new IOException("lease on ids from " + nextId + " lost, batch rolled back");
+                    }
+                    sink.commit(batch.size());
+                    nextId += batch.size();
+                    rowsInserted += batch.size();
+                    out.println(Coordinator.PROGRESS + " " + nextId);
+                    if (out.checkError()) {
+                        throw new IOException("coordinator connection lost");
+                    }
+                }
+                out.println(Coordinator.COMPLETE + " " + end);
+            }
+            System.out.printf("Session %s: inserted %,d rows%n", name, rowsInserted);
+        } catch (IOException | SQLException e) {
+            System.out.println("Session " + name + " stopped after " + rowsInserted + " rows: " + e.getMessage());
+        }
+    }
+
+    private JdbcSink openSink() throws SQLException {
+        Connection conn = DriverManager.getConnection(properties.getProperty("db.url"),
+                properties.getProperty("db.user"), properties.getProperty("db.password"));
+        JdbcSink.createTable(conn, table);
+        return new JdbcSink(conn, table);
+    }
+
+    /**
+     * Returns the first id of the range that is not in the table yet. Ranges are
+     * inserted in id order, so the committed rows always form a prefix of the range.
+     */
+    private long resumePoint(Connection conn, long start, long end) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT MAX(id) FROM " + table + " WHERE id >= ? AND id < ?")) {
+            stmt.setLong(1, start);
+            stmt.setLong(2, end);
+            try (ResultSet rs = stmt.executeQuery()) {
+                long resume = start;
+                if (rs.next()) {
+                    long max = rs.getLong(1);
+                    if (!rs.wasNull()) {
+                        resume = max + 1;
+                    }
+                }
+                conn.commit();
+                return resume;
+            }
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.datagenerator;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a mixed read/write workload against a table filled by the generators.
+ *
+ * <p>Each of {@code workload.threads} threads runs operations back to back, picking
+ * each one by the weights in {@code workload.mix}:</p>
+ * <ul>
+ *   <li>{@code lookup}: select one row by id</li>
+ *   <li>{@code range}: select {@code workload.range.length} consecutive ids</li>
+ *   <li>{@code email}: select by the email generated for an id</li>
+ *   <li>{@code update}: overwrite the names of one row</li>
+ *   <li>{@code insert}: append {@code workload.insert.batchSize} new rows after the range</li>
+ * </ul>
+ *
+ * <p>Ids are drawn uniformly or Zipfian from the generated range
+ * {@code workload.id.first..workload.id.last}, and emails are recomputed with
+ * {@link PersonFactory}, so no keys are ever read from the table. If
+ * {@code workload.id.last} is empty, the range is taken from {@code MIN(id)} and
+ * {@code MAX(id)} once at startup. Updates only touch the names, so the emails stay
+ * predictable. Email lookups assume the table was filled with explicit ids by the
+ * fan-out pipeline or the distributed workers. The person table only indexes its id,
+ * so unless {@code workload.email.index} is {@code false} an index on {@code email}
+ * is created at startup if the mix has email lookups; without it they measure full
+ * table scans.</p>
+ *
+ * <p>Throughput, misses, errors and latency percentiles are reported per operation
+ * type, printed every {@code workload.interval.seconds} and appended to
+ * {@code workload.report.path} at the end.</p>
+ */
+public class WorkloadDriver {
+    private static final String REPORT_HEADER =
+            "run_at,operation,operations,ops_per_sec,rows,misses,errors,p50_ms,p99_ms,p999_ms,max_ms";
+
+    /** The operation types of the mix. */
+    public enum Operation {
+        LOOKUP, RANGE, EMAIL, UPDATE, INSERT
+    }
+
+    private final Properties properties;
+    private final String table;
+    private final int rangeLength;
+    private final int insertBatchSize;
+    private final int[] cumulativeWeights = new int[Operation.values().length];
+    private final OperationStats[] stats = new OperationStats[Operation.values().length];
+    private KeyDistribution keys;
+    private AtomicLong nextInsertId;
+    private volatile boolean running = true;
+
+    public WorkloadDriver(Properties properties) {
+        this.properties = properties;
+        this.table = properties.getProperty("workload.table", "try_tb");
+        this.rangeLength = Integer.parseInt(properties.getProperty("workload.range.length", "100"));
+        this.insertBatchSize = Integer.parseInt(properties.getProperty("workload.insert.batchSize", "10"));
+        parseMix(properties.getProperty("workload.mix", "lookup:50,range:10,email:15,update:20,insert:5"));
+        for (Operation operation : Operation.values()) {
+            stats[operation.ordinal()] = new OperationStats();
+        }
+    }
+
+    /**
+     * Runs the workload configured by the {@code workload.*} settings.
+     *
+     * @param args {@code [propertiesFile]} overriding {@code application.properties}
+     */
+    public static void main(String[] args) {
+        Properties properties = AppProperties.load(args.length > 0 ? args[0] : null);
+        if (properties == null) {
+            return;
+        }
+        try {
+            new WorkloadDriver(properties).run();
+        } catch (SQLException e) {
+            System.out.println("Database error: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error writing workload report: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs the workload for {@code workload.duration.seconds} and writes the report.
+     *
+     * @throws SQLException If the id range cannot be determined
+     * @throws IOException If the report cannot be written
+     * @throws InterruptedException If interrupted while waiting for the threads
+     */
+    public void run() throws SQLException, IOException, InterruptedException {
+        int threads = Integer.parseInt(properties.getProperty("workload.threads", "8"));
+        double durationSeconds = Double.parseDouble(properties.getProperty("workload.duration.seconds", "60"));
+        double intervalSeconds = Double.parseDouble(properties.getProperty("workload.interval.seconds", "10"));
+        File reportFile = new File(properties.getProperty("workload.report.path", "workload/report.csv"));
+
+        if (!resolveKeyRange()) {
+            return;
+        }
+        if (weight(Operation.EMAIL) > 0
+                && Boolean.parseBoolean(properties.getProperty("workload.email.index", "true"))) {
+            ensureEmailIndex();
+        }
+        System.out.println("Workload: " + threads + " threads for " + durationSeconds + "s, keys " + keys);
+
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(this::runClient, "Workload-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+
+        long start = System.nanoTime();
+        long end = start + (long) (durationSeconds * 1e9);
+        long[] lastCounts = new long[stats.length];
+        long lastReport = start;
+        while (System.nanoTime() < end) {
+            long wait = Math.min(end, lastReport + (long) (intervalSeconds * 1e9)) - System.nanoTime();
+            if (wait > 0) {
+                Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            }
+            long now = System.nanoTime();
+            printInterval(lastCounts, (now - lastReport) / 1e9, (now - start) / 1e9);
+            lastReport = now;
+        }
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        writeReport(reportFile, (System.nanoTime() - start) / 1e9);
+    }
+
+    private boolean resolveKeyRange() throws SQLException {
+        long first = Long.parseLong(properties.getProperty("workload.id.first", "1"));
+        String lastValue = properties.getProperty("workload.id.last", "").trim();
+        long last;
+        if (lastValue.isEmpty()) {
+            try (Connection conn = openConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT MIN(id), MAX(id) FROM " + table)) {
+                rs.next();
+                first = rs.getLong(1);
+                last = rs.getLong(2);
+                if (rs.wasNull()) {
+                    System.out.println("Table " + table + " is empty; generate data before running the workload");
+                    return false;
+                }
+            }
+        } else {
+            last = Long.parseLong(lastValue);
+        }
+
+        long count = last - first + 1;
+        String distribution = properties.getProperty("workload.distribution", "zipfian").trim();
+        if (distribution.equalsIgnoreCase("uniform")) {
+            keys = KeyDistribution.uniform(first, count);
+        } else {
+            double theta = Double.parseDouble(properties.getProperty("workload.zipf.theta", "0.99"));
+            keys = KeyDistribution.zipfian(first, count, theta);
+        }
+        nextInsertId = new AtomicLong(last + 1);
+        return true;
+    }
+
+    /**
+     * Creates an index on {@code email} unless one already leads with that column.
+     * On a large table this takes a while, but only the first run pays for it.
+     */
+    private void ensureEmailIndex() throws SQLException {
+        try (Connection conn = openConnection()) {
+            DatabaseMetaData metaData = conn.getMetaData();
+            String storedName = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase() : table;
+            try (ResultSet rs = metaData.getIndexInfo(conn.getCatalog(), null, storedName, false, true)) {
+                while (rs.next()) {
+                    if (rs.getShort("ORDINAL_POSITION") == 1
+                            && "email".equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                        return;
+                    }
+                }
+            }
+            System.out.println("Creating an index on " + table + ".email for the email lookups...");
+            long start = System.nanoTime();
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE INDEX idx_" + table + "_email ON " + table + " (email)");
+            }
+            System.out.printf("Index created in %.2f seconds%n", (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    /** One client thread: its own connection, prepared statements and person factory. */
+    private void runClient() {
+        PersonFactory persons = new PersonFactory();
+        RowBatch insertBatch = new RowBatch(insertBatchSize, FanOutPipeline.PERSON_TEXT_COLUMNS);
+        RowBatch scratch = new RowBatch(1, FanOutPipeline.PERSON_TEXT_COLUMNS);
+
+        try (Connection conn = openConnection();
+             PreparedStatement lookup = conn.prepareStatement(
+                     "SELECT id, first_name, last_name, email FROM " + table + " WHERE id = ?");
+             PreparedStatement range = conn.prepareStatement(
+                     "SELECT id, first_name, last_name, email FROM " + table + " WHERE id >= ? AND id < ?");
+             PreparedStatement email = conn.prepareStatement(
+                     "SELECT id FROM " + table + " WHERE email = ?");
+             PreparedStatement update = conn.prepareStatement(
+                     "UPDATE " + table + " SET first_name = ?, last_name = ? WHERE id = ?");
+             JdbcSink inserts = new JdbcSink(openConnection(), table)) {
+            while (running) {
+                Operation operation = pickOperation();
+                OperationStats operationStats = stats[operation.ordinal()];
+                long start = System.nanoTime();
+                try {
+                    int rows;
+                    switch (operation) {
+                        case LOOKUP:
+                            lookup.setLong(1, keys.next());
+                            rows = countRows(lookup);
+                            break;
+                        case RANGE:
+                            long from = keys.next();
+                            range.setLong(1, from);
+                            range.setLong(2, from + rangeLength);
+                            rows = countRows(range);
+                            break;
+                        case EMAIL:
+                            email.setString(1, persons.email(keys.next()));
+                            rows = countRows(email);
+                            break;
+                        case UPDATE:
+                            scratch.clear();
+                            persons.addPerson(scratch, ThreadLocalRandom.current().nextLong());
+                            update.setString(1, scratch.getText(0, 0));
+                            update.setString(2, scratch.getText(0, 1));
+                            update.setLong(3, keys.next());
+                            rows = update.executeUpdate();
+                            break;
+                        default:
+                            long firstId = nextInsertId.getAndAdd(insertBatchSize);
+                            insertBatch.clear();
+                            for (int i = 0; i < insertBatchSize; i++) {
+                                persons.addPerson(insertBatch, firstId + i);
+                            }
+                            inserts.write(insertBatch);
+                            rows = insertBatchSize;
+                            break;
+                    }
+                    operationStats.completed(System.nanoTime() - start, rows);
+                } catch (SQLException e) {
+                    operationStats.failed(e);
+                }
+            }
+        } catch (Exception e) {
+            System.out.println(Thread.currentThread().getName() + " stopped: " + e.getMessage());
+        }
+    }
+
+    private static int countRows(PreparedStatement statement) throws SQLException {
+        int rows = 0;
+        try (ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private Operation pickOperation() {
+        int roll = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (roll < cumulativeWeights[i]) {
+                return Operation.values()[i];
+            }
+        }
+        return Operation.LOOKUP;
+    }
+
+    /** Parses {@code name:weight} pairs; operations that are not listed get weight 0. */
+    private void parseMix(String mix) {
+        int[] weights = new int[Operation.values().length];
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split(":");
+            weights[Operation.valueOf(parts[0].trim().toUpperCase()).ordinal()] = Integer.parseInt(parts[1].trim());
+        }
+        int total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += weights[i];
+            cumulativeWeights[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("workload.mix has no operation with a positive weight: " + mix);
+        }
+    }
+
+    private int weight(Operation operation) {
+        int i = operation.ordinal();
+        return cumulativeWeights[i] - (i == 0 ? 0 : cumulativeWeights[i - 1]);
+    }
+
+    private void printInterval(long[] lastCounts, double intervalSeconds, double elapsedSeconds) {
+        StringBuilder line = new StringBuilder(String.format("Workload %.0fs:", elapsedSeconds));
+        for (Operation operation : Operation.values()) {
+            long count = stats[operation.ordinal()].latency.getCount();
+            if (count > 0) {
+                line.append(String.format(" %s %.0f/s", operation.name().toLowerCase(),
+                        (count - lastCounts[operation.ordinal()]) / intervalSeconds));
+            }
+            lastCounts[operation.ordinal()] = count;
+        }
+        System.out.println(line);
+    }
+
+    private void writeReport(File reportFile, double seconds) throws IOException {
+        reportFile.getAbsoluteFile().getParentFile().mkdirs();
+        boolean writeHeader = !reportFile.exists() || reportFile.length() == 0;
+        String runAt = Instant.now().toString();
+        try (PrintWriter report = new PrintWriter(new FileWriter(reportFile, true))) {
+            if (writeHeader) {
+                report.println(REPORT_HEADER);
+            }
+            for (Operation operation : Operation.values()) {
+                OperationStats operationStats = stats[operation.ordinal()];
+                LatencyHistogram latency = operationStats.latency;
+                if (latency.getCount() == 0 && operationStats.errors.get() == 0) {
+                    continue;
+                }
+                String line = String.format("%s,%d,%.1f,%d,%d,%d,%.3f,%.3f,%.3f,%.3f",
+                        operation.name().toLowerCase(), latency.getCount(), latency.getCount() / seconds,
+                        operationStats.rows.get(), operationStats.misses.get(), operationStats.errors.get(),
+                        latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(99) / 1e6,
+                        latency.getValueAtPercentile(99.9) / 1e6, latency.getMax() / 1e6);
+                report.println(runAt + "," + line);
+                System.out.println("Workload: " + line);
+            }
+        }
+        System.out.println("Workload report written to " + reportFile.getAbsolutePath());
+    }
+
+    private Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(properties.getProperty("db.url"),
+                properties.getProperty("db.user"), properties.getProperty("db.password"));
+    }
+
+    /** Counters for one operation type, shared by all client threads. */
+    private static class OperationStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong rows = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+
+        void completed(long nanos, int rowCount) {
+            latency.record(nanos);
+            rows.addAndGet(rowCount);
+            if (rowCount == 0) {
+                misses.incrementAndGet();
+            }
+        }
+
+        void failed(SQLException e) {
+            if (errors.incrementAndGet() == 1) {
+                System.out.println("Workload error: " + e.getMessage());
+            }
+        }
+    }
+}
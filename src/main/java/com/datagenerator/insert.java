@@ -1,4 +1,5 @@
 package com.datagenerator;
+import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -13,6 +14,8 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+import jdk.jfr.Recording;
+
 /**
  * Generates and inserts sample person data into a database using JavaFaker library.
  * This class implements a multithreaded approach to data generation and insertion,
@@ -42,6 +45,8 @@ public class insert {
     private static final long RECORDS_PER_THREAD = TOTAL_RECORDS / THREAD_COUNT;
     private static final int CSV_THREAD_COUNT = 7; // Increased from 4 to 7
     private static final AtomicLong totalRecordsInserted = new AtomicLong(0);
+    // The first id of this run's rows, or -1 before the fan-out pipeline has assigned them
+    private static volatile long pipelineFirstId = -1;
     private static long startTime;
     private static final Scanner scanner = new Scanner(System.in);
 
@@ -70,10 +75,11 @@ public class insert {
         System.out.println("1. Generate and insert data into database");
         System.out.println("2. Export data to CSV");
         System.out.println("3. Both operations");
-        System.out.print("Enter your choice (1-3): ");
+        System.out.println("4. Generate and insert data into sharded databases");
+        System.out.print("Enter your choice (1-4): ");
         
         int choice = scanner.nextInt();
-        if (choice < 1 || choice > 3) {
+        if (choice < 1 || choice > 4) {
             System.out.println("Invalid choice. Exiting...");
             return;
         }
@@ -98,6 +104,8 @@ public class insert {
             return;
         }
 
+        Recording recording = FlightRecording.start(properties);
+        RejectFile rejects = new RejectFile(properties.getProperty("reject.path", "csv/rejects.csv"));
         ExecutorService executorService;
         List<Connection> connections = new ArrayList<>();
         CountDownLatch completionLatch;
@@ -108,7 +116,7 @@ public class insert {
             completionLatch = new CountDownLatch(userThreadCount);
             long recordsPerThread = TOTAL_RECORDS / userThreadCount;
             handleDatabaseOperations(executorService, connections, completionLatch, 
-                properties, userThreadCount, recordsPerThread);
+                properties, userThreadCount, recordsPerThread, rejects);
         } else if (choice == 2) {
             
             executorService = Executors.newFixedThreadPool(userThreadCount);
@@ -116,11 +124,16 @@ public class insert {
             long recordsPerThread = TOTAL_RECORDS / userThreadCount;
             handleCsvOperations(executorService, completionLatch, properties, 
                 userThreadCount, recordsPerThread);
-        } else {
+        } else if (choice == 3) {
           
-            executorService = Executors.newFixedThreadPool(THREAD_COUNT + CSV_THREAD_COUNT);
-            completionLatch = new CountDownLatch(THREAD_COUNT + CSV_THREAD_COUNT);
-            handleBothOperations(executorService, connections, completionLatch, properties);
+            // The fan-out pipeline manages its own threads; run it as a single task
+            executorService = Executors.newSingleThreadExecutor();
+            completionLatch = new CountDownLatch(1);
+            handleBothOperations(executorService, connections, completionLatch, properties, rejects);
+        } else {
+            executorService = Executors.newSingleThreadExecutor();
+            completionLatch = new CountDownLatch(1);
+            handleShardedOperations(executorService, completionLatch, properties);
         }
 
         // Wait for all tasks to complete using CountDownLatch
@@ -141,6 +154,11 @@ public class insert {
             // Wait for CSV export to complete
             logProgress(RECORDS_PER_THREAD * THREAD_COUNT);
             
+            // Sharded runs write other tables and verify each shard themselves
+            if (choice == 4) {
+                return;
+            }
+
             // Add verification after completion
             System.out.println("Verifying data insertion...");
             try (Connection conn = DriverManager.getConnection(properties.getProperty("db.url"), 
@@ -181,6 +199,29 @@ public class insert {
                         rs.getString("email"));
                 }
             }
+
+            if (choice == 3 && Boolean.parseBoolean(properties.getProperty("verify.afterRun", "false"))
+                    && isCsvSharded(properties)) {
+                System.out.println("\nSkipping checksum comparison: the CSV output is sharded");
+            } else if (choice == 3 && Boolean.parseBoolean(properties.getProperty("verify.afterRun", "false"))
+                    && pipelineFirstId < 0) {
+                System.out.println("\nSkipping checksum comparison: the pipeline did not start");
+            } else if (choice == 3 && Boolean.parseBoolean(properties.getProperty("verify.afterRun", "false"))) {
+                System.out.println("\nComparing table and CSV checksums...");
+                RoundTripVerifier verifier = new RoundTripVerifier(properties,
+                    properties.getProperty("verify.table", "try_tb"), THREAD_COUNT,
+                    Integer.parseInt(properties.getProperty("verify.ranges", "1024")),
+                    Integer.parseInt(properties.getProperty("verify.split", "16")),
+                    Integer.parseInt(properties.getProperty("verify.maxReported", "100")));
+                try {
+                    // The CSV holds only this run's rows, while the table keeps those of earlier runs
+                    boolean matches = verifier.verify(new File(properties.getProperty("csv.export.path")),
+                        pipelineFirstId, pipelineFirstId + TOTAL_RECORDS);
+                    System.out.println(matches ? "Table and CSV match" : "Table and CSV DIFFER");
+                } catch (IOException e) {
+                    System.out.println("Error reading CSV for verification: " + e.getMessage());
+                }
+            }
             
         } catch (SQLException | InterruptedException e) {
             System.out.println("Error: " + e.getMessage());
@@ -189,7 +230,15 @@ public class insert {
             System.out.println("Error: " + e.getMessage());   
             executorService.shutdownNow();
         } finally {
-            
+            if (rejects.getRejectedRows() > 0) {
+                System.out.printf("%d rows were rejected by the database, see %s%n",
+                    rejects.getRejectedRows(), rejects.getPath());
+            }
+            try {
+                rejects.close();
+            } catch (IOException e) {
+                System.out.println("Error closing reject file: " + e.getMessage());
+            }
             for (Connection conn : connections) {
                 try {
                     if (conn != null && !conn.isClosed()) {
@@ -199,12 +248,13 @@ public class insert {
                     System.out.println("Error closing connection: " + e.getMessage());
                 }
             }
+            FlightRecording.stop(recording);
         }
     }
 
     private static void handleDatabaseOperations(ExecutorService executorService, 
             List<Connection> connections, CountDownLatch completionLatch, 
-            Properties properties, int threadCount, long recordsPerThread) {
+            Properties properties, int threadCount, long recordsPerThread, RejectFile rejects) {
         String url = properties.getProperty("db.url");
         String user = properties.getProperty("db.user");
         String password = properties.getProperty("db.password");
@@ -215,7 +265,7 @@ public class insert {
                 conn.setAutoCommit(false);
                 connections.add(conn);
                 executorService.submit(new DataGenerator(conn, recordsPerThread, 
-                    BATCH_SIZE, i, totalRecordsInserted, TOTAL_RECORDS, completionLatch));
+                    BATCH_SIZE, i, totalRecordsInserted, TOTAL_RECORDS, completionLatch, rejects));
             }
             System.out.printf("Started %d database threads, %d records per thread%n", 
                 threadCount, recordsPerThread);
@@ -238,10 +288,145 @@ public class insert {
             threadCount, recordsPerThread);
     }
 
+    private static boolean isCsvSharded(Properties properties) {
+        return Long.parseLong(properties.getProperty("csv.shard.maxRows", "0")) > 0
+            || Long.parseLong(properties.getProperty("csv.shard.maxBytes", "0")) > 0;
+    }
+
+    /** A plain CSV file, or size-capped shards with a manifest when {@code csv.shard.*} is set. */
+    private static RecordSink createCsvSink(Properties properties, String csvPath) throws IOException {
+        if (isCsvSharded(properties)) {
+            return new RollingCsvSink(csvPath,
+                Long.parseLong(properties.getProperty("csv.shard.maxRows", "0")),
+                Long.parseLong(properties.getProperty("csv.shard.maxBytes", "0")));
+        }
+        return new CsvSink(csvPath);
+    }
+
+    /**
+     * Generates each batch once and writes it to both the database and the CSV file,
+     * so both hold identical rows and generation cost is only paid once.
+     */
     private static void handleBothOperations(ExecutorService executorService, 
-            List<Connection> connections, CountDownLatch completionLatch, Properties properties) {
-        handleDatabaseOperations(executorService, connections, completionLatch, properties, THREAD_COUNT, RECORDS_PER_THREAD);
-        handleCsvOperations(executorService, completionLatch, properties, CSV_THREAD_COUNT, TOTAL_RECORDS / CSV_THREAD_COUNT);
+            List<Connection> connections, CountDownLatch completionLatch, Properties properties,
+            RejectFile rejects) {
+        String url = properties.getProperty("db.url");
+        String user = properties.getProperty("db.user");
+        String password = properties.getProperty("db.password");
+        String csvPath = properties.getProperty("csv.export.path");
+        int queueCapacity = Integer.parseInt(properties.getProperty("pipeline.queue.capacity", "8"));
+
+        try {
+            List<JdbcSink> dbSinks = new ArrayList<>();
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                Connection conn = DriverManager.getConnection(url, user, password);
+                connections.add(conn);
+                if (i == 0) {
+                    JdbcSink.createTable(conn, "try_tb");
+                }
+                JdbcSink sink = new JdbcSink(conn, "try_tb");
+                sink.setRejectFile(rejects);
+                dbSinks.add(sink);
+            }
+            long firstId = JdbcSink.nextId(connections.get(0), "try_tb");
+            pipelineFirstId = firstId;
+
+            FanOutPipeline pipeline = new FanOutPipeline(BASE_THREAD_COUNT, TOTAL_RECORDS, firstId,
+                BATCH_SIZE, queueCapacity);
+            if (Boolean.parseBoolean(properties.getProperty("pipeline.spill.enabled", "false"))) {
+                File spillDir = new File(properties.getProperty("pipeline.spill.dir",
+                    System.getProperty("java.io.tmpdir")));
+                spillDir.mkdirs();
+                pipeline.enableSpill(
+                    Long.parseLong(properties.getProperty("pipeline.spill.offHeapBytes", "268435456")),
+                    Long.parseLong(properties.getProperty("pipeline.spill.maxBytes", "0")),
+                    spillDir);
+            }
+            if (Boolean.parseBoolean(properties.getProperty("pipeline.stats.enabled", "true"))) {
+                pipeline.enableStatistics();
+            }
+            pipeline.addSink("DB", dbSinks);
+            pipeline.addSink("CSV", List.of(createCsvSink(properties, csvPath)));
+
+            executorService.submit(() -> {
+                try {
+                    pipeline.run();
+                    totalRecordsInserted.addAndGet(pipeline.getRowsWritten("DB"));
+                    if (pipeline.getStatistics() != null) {
+                        System.out.print(pipeline.getStatistics().report());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    completionLatch.countDown();
+                }
+            });
+        } catch (SQLException e) {
+            System.out.println("Database connection error: " + e.getMessage());
+            completionLatch.countDown();
+        } catch (IOException e) {
+            System.out.println("Error opening CSV file: " + e.getMessage());
+            completionLatch.countDown();
+        }
+    }
+
+    /**
+     * Generates rows once and routes them over the shards listed in {@code shard.targets}
+     * and {@code shard.tables}, each shard loading through its own connections.
+     */
+    private static void handleShardedOperations(ExecutorService executorService,
+            CountDownLatch completionLatch, Properties properties) {
+        List<String> urls = splitList(properties.getProperty("shard.targets", ""));
+        if (urls.isEmpty()) {
+            urls = List.of(properties.getProperty("db.url"));
+        }
+        List<String> suffixes = splitList(properties.getProperty("shard.tables", ""));
+        if (suffixes.isEmpty()) {
+            suffixes = List.of("");
+        }
+        ShardedSink.Routing routing = ShardedSink.Routing.valueOf(
+            properties.getProperty("shard.routing", "hash").trim().toUpperCase());
+        int workersPerShard = Integer.parseInt(properties.getProperty("shard.workers", "4"));
+        int queueCapacity = Integer.parseInt(properties.getProperty("pipeline.queue.capacity", "8"));
+
+        try {
+            ShardedSink shardedSink = new ShardedSink(urls, "try_tb", suffixes,
+                properties.getProperty("db.user"), properties.getProperty("db.password"),
+                routing, TOTAL_RECORDS, BATCH_SIZE, workersPerShard, queueCapacity);
+            FanOutPipeline pipeline = new FanOutPipeline(BASE_THREAD_COUNT, TOTAL_RECORDS,
+                shardedSink.getFirstId(), BATCH_SIZE, queueCapacity);
+            if (Boolean.parseBoolean(properties.getProperty("pipeline.stats.enabled", "true"))) {
+                pipeline.enableStatistics();
+            }
+            pipeline.addSink("Sharded", List.of(shardedSink));
+
+            executorService.submit(() -> {
+                try {
+                    pipeline.run();
+                    totalRecordsInserted.addAndGet(pipeline.getRowsWritten("Sharded"));
+                    if (pipeline.getStatistics() != null) {
+                        System.out.print(pipeline.getStatistics().report());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    completionLatch.countDown();
+                }
+            });
+        } catch (SQLException e) {
+            System.out.println("Database connection error: " + e.getMessage());
+            completionLatch.countDown();
+        }
+    }
+
+    private static List<String> splitList(String value) {
+        List<String> items = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.trim().isEmpty()) {
+                items.add(item.trim());
+            }
+        }
+        return items;
     }
 
     /**
@@ -0,0 +1,145 @@
+package com.datagenerator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.opencsv.CSVReader;
+
+class BatchBisectorTest {
+    private Connection connection;
+
+    @TempDir
+    File tempDir;
+
+    @BeforeEach
+    void createTable() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:bisector;MODE=MySQL", "sa", "");
+        connection.setAutoCommit(false);
+        JdbcSink.createTable(connection, "person_tb");
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("INSERT INTO person_tb (id, first_name, last_name, email) VALUES (57, 'a', 'b', 'c')");
+        }
+        connection.commit();
+    }
+
+    @AfterEach
+    void closeConnection() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void isolatesTheOneBadRowAndCommitsTheRest() throws Exception {
+        File rejectPath = new File(tempDir, "person.rejects");
+        RowBatch batch = new RowBatch(100, 3);
+        for (long id = 1; id <= 100; id++) {
+            batch.addRow(id);
+            batch.addText("First" + id);
+            batch.addText("Last" + id);
+            batch.addText("person" + id + "@example.com");
+        }
+
+        int rejected;
+        try (RejectFile rejects = new RejectFile(rejectPath.getPath());
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO person_tb (id, first_name, last_name, email) VALUES (?, ?, ?, ?)")) {
+            rejected = new BatchBisector(insert, JdbcSink::bindRow, rejects).execute(batch);
+        }
+
+        assertEquals(1, rejected);
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*), SUM(id) FROM person_tb")) {
+            rs.next();
+            assertEquals(100, rs.getLong(1));
+            assertEquals(5050, rs.getLong(2));
+        }
+        List<String> lines = Files.readAllLines(rejectPath.toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(1).startsWith("\"57\",\"First57\",\"Last57\",\"person57@example.com\",\""), lines.get(1));
+    }
+
+    @Test
+    void rejectLinesKeepTheirColumnsWhenTheTextHoldsCommasAndQuotes() throws Exception {
+        File rejectPath = new File(tempDir, "quoted.rejects");
+        RowBatch batch = new RowBatch(1, 3);
+        batch.addRow(7);
+        batch.addText("Anne, Jr.");
+        batch.addText("O\"Neil");
+        batch.addText("anne@example.com");
+
+        try (RejectFile rejects = new RejectFile(rejectPath.getPath())) {
+            rejects.reject(batch, 0, "Value \"x\", too long\nfor column");
+        }
+
+        try (CSVReader reader = new CSVReader(new FileReader(rejectPath))) {
+            List<String[]> rows = reader.readAll();
+            assertEquals(2, rows.size());
+            assertArrayEquals(new String[]{"7", "Anne, Jr.", "O\"Neil", "anne@example.com",
+                    "Value \"x\", too long for column"}, rows.get(1));
+        }
+    }
+
+    @Test
+    void aFailureWhileBindingClearsTheBatchAndRollsBack() throws Exception {
+        RowBatch batch = new RowBatch(10, 3);
+        for (long id = 100; id < 110; id++) {
+            batch.addRow(id);
+            batch.addText("First" + id);
+            batch.addText("Last" + id);
+            batch.addText("person" + id + "@example.com");
+        }
+        BatchBisector.RowBinder failing = (statement, rows, row) -> {
+            if (row == 5) {
+                throw new SQLException("bind failed", "HY000");
+            }
+            JdbcSink.bindRow(statement, rows, row);
+        };
+
+        try (RejectFile rejects = new RejectFile(new File(tempDir, "bind.rejects").getPath());
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO person_tb (id, first_name, last_name, email) VALUES (?, ?, ?, ?)")) {
+            assertThrows(SQLException.class, () -> new BatchBisector(insert, failing, rejects).execute(batch));
+            // The rows bound before the failure must not ride along with the next batch
+            assertEquals(0, new BatchBisector(insert, JdbcSink::bindRow, rejects).execute(batch));
+            assertEquals(0, rejects.getRejectedRows());
+        }
+
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM person_tb")) {
+            rs.next();
+            assertEquals(11, rs.getLong(1));
+        }
+    }
+
+    @Test
+    void onlyDataAndConstraintErrorsAreBisected() {
+        assertTrue(BatchBisector.isCausedByData(new BatchUpdateException("duplicate", "23000", new int[0])));
+        assertTrue(BatchBisector.isCausedByData(new BatchUpdateException("too long", "22001", new int[0])));
+        assertFalse(BatchBisector.isCausedByData(new BatchUpdateException("deadlock", "40001", new int[0])));
+        assertFalse(BatchBisector.isCausedByData(new BatchUpdateException("connection lost", "08S01", new int[0])));
+
+        BatchUpdateException chained = new BatchUpdateException();
+        chained.setNextException(new SQLException("duplicate", "23505"));
+        assertTrue(BatchBisector.isCausedByData(chained));
+    }
+}
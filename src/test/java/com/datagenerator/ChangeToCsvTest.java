@@ -0,0 +1,138 @@
+package com.datagenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChangeToCsvTest {
+    private static final String URL = "jdbc:h2:mem:changes;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @TempDir
+    File tempDir;
+
+    private Connection conn;
+    private Path csv;
+
+    @BeforeEach
+    void createTable() throws SQLException {
+        conn = DriverManager.getConnection(URL, "sa", "");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE persons (id BIGINT PRIMARY KEY, first_name VARCHAR(255), "
+                    + "last_name VARCHAR(255), email VARCHAR(255))");
+        }
+        csv = new File(tempDir, "people.csv").toPath();
+    }
+
+    @AfterEach
+    void dropTable() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE persons");
+        }
+        conn.close();
+    }
+
+    @Test
+    void anIncrementalRunAppendsOnlyTheRowsAfterTheWatermark() throws Exception {
+        insert(1, 5);
+        ChangeToCsv.exportIncremental(conn, csv, false);
+        insert(6, 8);
+        ChangeToCsv.exportIncremental(conn, csv, false);
+        ChangeToCsv.exportIncremental(conn, csv, false);
+
+        List<String> lines = lines(csv);
+        assertEquals(9, lines.size());
+        assertEquals("first_name,last_name,email", lines.get(0));
+        for (int id = 1; id <= 8; id++) {
+            assertEquals("First" + id + ",Last" + id + ",person" + id + "@example.com", lines.get(id));
+        }
+        String state = new String(Files.readAllBytes(state()), StandardCharsets.ISO_8859_1);
+        assertTrue(state.contains("last.id=8"));
+        assertTrue(state.contains("csv.length=" + Files.size(csv)));
+    }
+
+    @Test
+    void bytesLeftByAnInterruptedRunAreDiscarded() throws Exception {
+        insert(1, 3);
+        ChangeToCsv.exportIncremental(conn, csv, false);
+        // A run that died after writing part of a row, before it replaced the state file
+        Files.write(csv, "First4,La".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        insert(4, 5);
+        ChangeToCsv.exportIncremental(conn, csv, false);
+
+        List<String> lines = lines(csv);
+        assertEquals(6, lines.size());
+        assertEquals("First4,Last4,person4@example.com", lines.get(4));
+        assertEquals("First5,Last5,person5@example.com", lines.get(5));
+    }
+
+    @Test
+    void segmentModeWritesTheNewRowsToTheirOwnFile() throws Exception {
+        insert(1, 3);
+        ChangeToCsv.exportIncremental(conn, csv, true);
+        insert(4, 6);
+        ChangeToCsv.exportIncremental(conn, csv, true);
+        ChangeToCsv.exportIncremental(conn, csv, true);
+
+        assertFalse(Files.exists(csv));
+        List<String> second = lines(tempDir.toPath().resolve("people.4.csv"));
+        assertEquals(4, second.size());
+        assertEquals("first_name,last_name,email", second.get(0));
+        assertEquals("First4,Last4,person4@example.com", second.get(1));
+        // The run that found nothing new leaves no empty segment behind
+        assertFalse(Files.exists(tempDir.toPath().resolve("people.7.csv")));
+        assertFalse(Files.exists(tempDir.toPath().resolve("people.7.csv.tmp")));
+    }
+
+    @Test
+    void appendingRefusesACsvWithoutItsStateFile() throws Exception {
+        insert(1, 3);
+        ChangeToCsv.exportIncremental(conn, csv, false);
+        Files.delete(state());
+        long size = Files.size(csv);
+
+        assertThrows(IOException.class, () -> ChangeToCsv.exportIncremental(conn, csv, false));
+        assertEquals(size, Files.size(csv));
+    }
+
+    private void insert(long first, long last) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO persons (id, first_name, last_name, email) VALUES (?, ?, ?, ?)")) {
+            for (long id = first; id <= last; id++) {
+                stmt.setLong(1, id);
+                stmt.setString(2, "First" + id);
+                stmt.setString(3, "Last" + id);
+                stmt.setString(4, "person" + id + "@example.com");
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private Path state() {
+        return tempDir.toPath().resolve("people.csv.state");
+    }
+
+    private static List<String> lines(Path path) throws IOException {
+        return Files.readAllLines(path, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,151 @@
+package com.datagenerator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+
+class CoordinatorTest {
+    private static final int HEARTBEAT_MILLIS = 300;
+
+    @Test
+    void aSessionThatTimedOutIsNotGrantedItsCommit() throws Exception {
+        Coordinator coordinator = new Coordinator(1, 100, 100, HEARTBEAT_MILLIS, 3);
+        int port = freePort();
+        Thread server = serve(coordinator, port);
+
+        try (Session slow = new Session(port, "slow")) {
+            assertEquals("RANGE 1 101", slow.read());
+            // Stall past the heartbeat timeout; the range goes back to the queue
+            Thread.sleep(HEARTBEAT_MILLIS * 3);
+
+            try (Session fast = new Session(port, "fast")) {
+                assertEquals("RANGE 1 101", fast.read());
+
+                slow.send("LEASE 1");
+                assertNotEquals(Coordinator.GRANTED, slow.readOrNull());
+
+                fast.send("LEASE 1");
+                assertEquals(Coordinator.GRANTED, fast.read());
+                fast.send("PROGRESS 101");
+                fast.send("COMPLETE 101");
+                assertEquals(Coordinator.DONE, fast.read());
+            }
+        }
+        server.join(10_000);
+        assertTrue(coordinator.getFailedRanges().isEmpty());
+    }
+
+    @Test
+    void aRangeTheDatabaseKeepsRefusingIsGivenUp() throws Exception {
+        String url = "jdbc:h2:mem:coordinator;MODE=MySQL;DB_CLOSE_DELAY=-1";
+        try (Connection conn = DriverManager.getConnection(url, "sa", "");
+             Statement stmt = conn.createStatement()) {
+            // Id 15 can never be inserted, so every batch holding it fails
+            stmt.execute("CREATE TABLE try_tb (id BIGINT PRIMARY KEY CHECK (id <> 15), first_name VARCHAR(255), "
+                    + "last_name VARCHAR(255), email VARCHAR(255))");
+        }
+        Properties properties = new Properties();
+        properties.setProperty("db.url", url);
+        properties.setProperty("db.user", "sa");
+        properties.setProperty("db.password", "");
+        properties.setProperty("dist.batchSize", "5");
+
+        Coordinator coordinator = new Coordinator(1, 30, 10, 5000, 2);
+        int port = freePort();
+        Thread server = serve(coordinator, port);
+        Thread worker = new Thread(() -> new Worker("localhost", port, properties).runSession("worker"));
+        worker.start();
+        worker.join(10_000);
+        server.join(10_000);
+
+        List<long[]> failed = coordinator.getFailedRanges();
+        assertEquals(1, failed.size());
+        assertArrayEquals(new long[]{11, 21}, failed.get(0));
+        try (Connection conn = DriverManager.getConnection(url, "sa", "");
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*), SUM(id) FROM try_tb")) {
+            rs.next();
+            // Ids 1 to 10 and 21 to 30 were still inserted
+            assertEquals(20, rs.getLong(1));
+            assertEquals(55 + 255, rs.getLong(2));
+        }
+    }
+
+    private static Thread serve(Coordinator coordinator, int port) throws InterruptedException {
+        Thread server = new Thread(() -> {
+            try {
+                coordinator.serve(port);
+            } catch (IOException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        server.start();
+        // Wait until the port accepts connections
+        for (int i = 0; i < 100; i++) {
+            try (Socket probe = new Socket("localhost", port)) {
+                break;
+            } catch (IOException e) {
+                Thread.sleep(20);
+            }
+        }
+        return server;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /** One hand-driven worker session. */
+    private static final class Session implements AutoCloseable {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final PrintWriter out;
+
+        Session(int port, String name) throws IOException {
+            socket = new Socket("localhost", port);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            send(Coordinator.HELLO + " " + name);
+        }
+
+        void send(String line) {
+            out.println(line);
+        }
+
+        String read() throws IOException {
+            return in.readLine();
+        }
+
+        String readOrNull() {
+            try {
+                return in.readLine();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
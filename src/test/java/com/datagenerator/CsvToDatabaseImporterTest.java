@@ -0,0 +1,118 @@
+package com.datagenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CsvToDatabaseImporterTest {
+    private static final String URL = "jdbc:h2:mem:importer;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void upsertOverwritesExistingRowsAndInsertsNewOnes() throws Exception {
+        try (Connection conn = DriverManager.getConnection(URL, "sa", "")) {
+            JdbcSink.createTable(conn, "upsert_tb");
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO upsert_tb (id, first_name, last_name, email) VALUES (?, 'Old', 'Old', 'old')")) {
+                for (long id = 1; id <= 10; id++) {
+                    stmt.setLong(1, id);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+
+            // Ids 6 to 10 already exist; the gap up to 20 leaves chunks with nothing to merge
+            List<String> lines = new ArrayList<>();
+            lines.add("id,first_name,last_name,email");
+            for (long id = 6; id <= 10; id++) {
+                lines.add(id + ",First" + id + ",Last" + id + ",person" + id + "@example.com");
+            }
+            for (long id = 20; id <= 22; id++) {
+                lines.add(id + ",First" + id + ",Last" + id + ",person" + id + "@example.com");
+            }
+            File csv = new File(tempDir, "people.csv");
+            Files.write(csv.toPath(), lines, StandardCharsets.UTF_8);
+
+            for (int run = 0; run < 2; run++) {
+                // A second run merges the same file again, into unchanged rows
+                CsvToDatabaseImporter importer = new CsvToDatabaseImporter(csv.getPath(), conn, "upsert_tb", 3);
+                importer.enableUpsert(3);
+                importer.run();
+                assertEquals(8, importer.getRowsInserted());
+                assertEquals(0, importer.getRowsRejected());
+            }
+
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT id, first_name, email FROM upsert_tb ORDER BY id")) {
+                List<Long> ids = new ArrayList<>();
+                while (rs.next()) {
+                    long id = rs.getLong(1);
+                    ids.add(id);
+                    if (id <= 5) {
+                        assertEquals("Old", rs.getString(2));
+                    } else {
+                        assertEquals("First" + id, rs.getString(2));
+                        assertEquals("person" + id + "@example.com", rs.getString(3));
+                    }
+                }
+                assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 20L, 21L, 22L), ids);
+            }
+            assertFalse(tableExists(conn, "UPSERT_TB_STAGING"), "the staging table is dropped");
+        }
+    }
+
+    @Test
+    void rowsTheStagingTableRefusesAreRejectedAndNotMerged() throws Exception {
+        try (Connection conn = DriverManager.getConnection(URL, "sa", "")) {
+            JdbcSink.createTable(conn, "reject_tb");
+            File csv = new File(tempDir, "people.csv");
+            StringBuilder longEmail = new StringBuilder();
+            for (int i = 0; i < 200; i++) {
+                longEmail.append('x');
+            }
+            Files.write(csv.toPath(), List.of("id,first_name,last_name,email",
+                    "1,First1,Last1,person1@example.com",
+                    "2,First2,Last2," + longEmail,
+                    "3,First3,Last3,person3@example.com"), StandardCharsets.UTF_8);
+
+            CsvToDatabaseImporter importer = new CsvToDatabaseImporter(csv.getPath(), conn, "reject_tb", 10);
+            importer.enableUpsert(100);
+            importer.run();
+
+            assertEquals(2, importer.getRowsInserted());
+            assertEquals(1, importer.getRowsRejected());
+            List<String> rejects = Files.readAllLines(new File(tempDir, "people.csv.rejects").toPath(),
+                    StandardCharsets.UTF_8);
+            assertEquals(2, rejects.size());
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*), SUM(id) FROM reject_tb")) {
+                rs.next();
+                assertEquals(2, rs.getLong(1));
+                assertEquals(4, rs.getLong(2));
+            }
+        }
+    }
+
+    private static boolean tableExists(Connection conn, String table) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getTables(null, null, table, null)) {
+            return rs.next();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.datagenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class FanOutDistributionTest {
+    private static final int PARENTS = 100_000;
+
+    @Test
+    void fixedAlwaysReturnsItsCount() {
+        FanOutDistribution fanOut = FanOutDistribution.fixed(3, 1);
+        for (long id = 1; id <= 1000; id++) {
+            assertEquals(3, fanOut.count(id));
+        }
+        assertEquals(3.0, fanOut.getMean());
+    }
+
+    @Test
+    void uniformCountsAreEvenlySpread() {
+        long[] hits = counts(FanOutDistribution.uniform(2, 5, 7), 2, 5);
+        for (long h : hits) {
+            assertEquals(PARENTS / 4.0, h, PARENTS * 0.01);
+        }
+    }
+
+    @Test
+    void zipfianFavoursFewChildrenAndMatchesItsMean() {
+        FanOutDistribution fanOut = FanOutDistribution.zipfian(0, 10, 1.0, 7);
+        long[] hits = counts(fanOut, 0, 10);
+        for (int i = 1; i < hits.length; i++) {
+            assertTrue(hits[i - 1] > hits[i], "count " + (i - 1) + " should be likelier than " + i);
+        }
+        long children = 0;
+        for (int i = 0; i < hits.length; i++) {
+            children += i * hits[i];
+        }
+        assertEquals(fanOut.getMean(), (double) children / PARENTS, 0.05);
+    }
+
+    @Test
+    void countDependsOnlyOnParentIdAndSalt() {
+        FanOutDistribution first = FanOutDistribution.parse("uniform:0:100", 11);
+        FanOutDistribution second = FanOutDistribution.parse("uniform:0:100", 11);
+        FanOutDistribution salted = FanOutDistribution.parse("uniform:0:100", 12);
+        int differences = 0;
+        for (long id = 1; id <= 1000; id++) {
+            assertEquals(first.count(id), second.count(id));
+            if (first.count(id) != salted.count(id)) {
+                differences++;
+            }
+        }
+        assertNotEquals(0, differences);
+    }
+
+    @Test
+    void rejectsInvalidSpecs() {
+        assertThrows(IllegalArgumentException.class, () -> FanOutDistribution.parse("uniform:5", 0));
+        assertThrows(IllegalArgumentException.class, () -> FanOutDistribution.parse("poisson:3", 0));
+        assertThrows(IllegalArgumentException.class, () -> FanOutDistribution.uniform(5, 2, 0));
+    }
+
+    /** Counts how many parents get each number of children, checking the range. */
+    private static long[] counts(FanOutDistribution fanOut, int min, int max) {
+        long[] hits = new long[max - min + 1];
+        for (long id = 1; id <= PARENTS; id++) {
+            int count = fanOut.count(id);
+            assertTrue(count >= min && count <= max, "count " + count);
+            hits[count - min]++;
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,41 @@
+package com.datagenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class HyperLogLogTest {
+
+    @ParameterizedTest
+    @ValueSource(longs = {100, 10_000, 1_000_000})
+    void estimateIsWithinFourStandardErrors(long distinct) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (long i = 0; i < distinct; i++) {
+            sketch.add(HyperLogLog.hash(i));
+            // Duplicates must not change the estimate
+            sketch.add(HyperLogLog.hash(i));
+        }
+
+        double error = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+        assertTrue(error <= 4 * sketch.getStandardError(),
+                "estimate " + sketch.estimate() + " for " + distinct + " distinct values");
+    }
+
+    @Test
+    void mergedSketchesEqualOneSketchOfAllValues() {
+        HyperLogLog all = new HyperLogLog();
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        for (long i = 0; i < 50_000; i++) {
+            all.add(HyperLogLog.hash(i));
+            (i % 2 == 0 ? first : second).add(HyperLogLog.hash(i));
+        }
+
+        first.merge(second);
+
+        assertEquals(all.estimate(), first.estimate());
+    }
+}
@@ -0,0 +1,68 @@
+package com.datagenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class KeyDistributionTest {
+    private static final int SAMPLES = 200_000;
+
+    @Test
+    void zipfianHottestKeyHasItsExpectedShare() {
+        long count = 1000;
+        double theta = 0.99;
+        KeyDistribution keys = KeyDistribution.zipfian(500, count, theta);
+        long[] hits = sample(keys);
+
+        long hottest = 0;
+        for (long h : hits) {
+            hottest = Math.max(hottest, h);
+        }
+        double zeta = 0;
+        for (int rank = 1; rank <= count; rank++) {
+            zeta += 1 / Math.pow(rank, theta);
+        }
+        // Rank 1 is drawn with probability 1 / zeta(n, theta)
+        assertEquals(1 / zeta, (double) hottest / SAMPLES, 0.1 / zeta);
+    }
+
+    @Test
+    void zipfianIsSkewedAndUniformIsNot() {
+        long[] zipfian = sample(KeyDistribution.zipfian(0, 1000, 0.99));
+        long[] uniform = sample(KeyDistribution.uniform(0, 1000));
+
+        assertTrue(topTenShare(zipfian) > 0.3, "zipfian top ten share " + topTenShare(zipfian));
+        assertTrue(topTenShare(uniform) < 0.02, "uniform top ten share " + topTenShare(uniform));
+    }
+
+    @Test
+    void rejectsThetaOutsideOpenUnitInterval() {
+        assertThrows(IllegalArgumentException.class, () -> KeyDistribution.zipfian(0, 10, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> KeyDistribution.zipfian(0, 10, 0));
+    }
+
+    /** Counts the draws per id, checking every id is in range. */
+    private static long[] sample(KeyDistribution keys) {
+        long[] hits = new long[(int) keys.getCount()];
+        for (int i = 0; i < SAMPLES; i++) {
+            long id = keys.next();
+            assertTrue(id >= keys.getFirstId() && id < keys.getFirstId() + keys.getCount(), "id " + id);
+            hits[(int) (id - keys.getFirstId())]++;
+        }
+        return hits;
+    }
+
+    private static double topTenShare(long[] hits) {
+        long[] sorted = hits.clone();
+        Arrays.sort(sorted);
+        long top = 0;
+        for (int i = sorted.length - 10; i < sorted.length; i++) {
+            top += sorted[i];
+        }
+        return (double) top / SAMPLES;
+    }
+}
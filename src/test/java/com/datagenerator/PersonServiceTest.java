@@ -0,0 +1,89 @@
+package com.datagenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PersonServiceTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private PersonService service;
+
+    @BeforeEach
+    void startService() throws IOException {
+        service = new PersonService(InetAddress.getLoopbackAddress(), 0, 4, 64, 5000, PersonFactory.DEFAULT_SEED);
+        service.start();
+    }
+
+    @AfterEach
+    void stopService() {
+        service.stop();
+    }
+
+    @Test
+    void aSingleLookupReturnsTheGeneratedPersonAndIsCached() throws Exception {
+        Person person = new PersonFactory().person(42);
+        String expected = "{\"id\":42,\"first_name\":\"" + person.getFirstName() + "\",\"last_name\":\""
+                + person.getLastName() + "\",\"email\":\"" + person.getEmail() + "\"}";
+
+        HttpResponse<String> first = get("/persons/42");
+        HttpResponse<String> second = get("/persons/42");
+
+        assertEquals(200, first.statusCode());
+        assertEquals(expected, first.body());
+        assertEquals(expected, second.body());
+        String stats = get("/stats").body();
+        assertTrue(stats.contains("\"cacheHits\":1,\"cacheMisses\":1"), stats);
+    }
+
+    @Test
+    void aRangeIsStreamedAsCsvOrJson() throws Exception {
+        // Longer than one generation batch, so several batches are encoded
+        HttpResponse<String> csv = get("/persons?from=100&count=2500&format=csv");
+        assertEquals(200, csv.statusCode());
+        String[] lines = csv.body().split("\n");
+        assertEquals(2501, lines.length);
+        assertEquals("id,first_name,last_name,email", lines[0]);
+        PersonFactory factory = new PersonFactory();
+        for (int i = 1; i < lines.length; i++) {
+            long id = 99 + i;
+            assertEquals(id + "," + factory.person(id).getFirstName(),
+                    lines[i].substring(0, lines[i].indexOf(',', lines[i].indexOf(',') + 1)));
+        }
+
+        String json = get("/persons?from=1&to=30").body();
+        assertTrue(json.startsWith("[\n{\"id\":1,"));
+        assertTrue(json.endsWith(",\n{\"id\":30,\"first_name\":\"" + factory.person(30).getFirstName()
+                + "\",\"last_name\":\"" + factory.person(30).getLastName() + "\",\"email\":\""
+                + factory.person(30).getEmail() + "\"}\n]\n"));
+        assertEquals(30, json.split("\\{\"id\":").length - 1);
+        assertTrue(get("/stats").body().contains("\"rowsStreamed\":2530"));
+    }
+
+    @Test
+    void invalidRequestsAreRefused() throws Exception {
+        assertEquals(400, get("/persons/abc").statusCode());
+        assertEquals(400, get("/persons?from=1&count=5001").statusCode());
+        assertEquals(400, get("/persons?count=5").statusCode());
+        HttpResponse<String> post = client.send(HttpRequest.newBuilder(uri("/persons/1"))
+                .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(405, post.statusCode());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(uri(path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + service.getPort() + path);
+    }
+}
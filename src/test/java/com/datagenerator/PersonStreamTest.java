@@ -0,0 +1,61 @@
+package com.datagenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class PersonStreamTest {
+    private static final long FIRST_ID = 1000;
+    private static final long COUNT = 5000;
+
+    @Test
+    void parallelStreamYieldsTheSameRowsInOrder() {
+        List<Person> sequential = PersonStream.persons(FIRST_ID, COUNT).collect(Collectors.toList());
+        List<Person> parallel = PersonStream.persons(FIRST_ID, COUNT).parallel().collect(Collectors.toList());
+
+        assertEquals(COUNT, sequential.size());
+        assertEquals(sequential, parallel);
+        for (int i = 0; i < sequential.size(); i++) {
+            assertEquals(FIRST_ID + i, sequential.get(i).getId());
+        }
+    }
+
+    @Test
+    void rowsMatchPersonFactory() {
+        PersonFactory factory = new PersonFactory(42);
+        List<Person> persons = PersonStream.persons(FIRST_ID, 10, 42).collect(Collectors.toList());
+        for (Person person : persons) {
+            assertEquals(factory.person(person.getId()), person);
+        }
+    }
+
+    @Test
+    void parallelBatchesHoldTheSameRowsAsPersons() {
+        List<Person> persons = PersonStream.persons(FIRST_ID, COUNT).collect(Collectors.toList());
+        List<RowBatch> batches = PersonStream.batches(FIRST_ID, COUNT, 300).parallel().collect(Collectors.toList());
+
+        List<Person> fromBatches = new ArrayList<>();
+        for (RowBatch batch : batches) {
+            for (int row = 0; row < batch.size(); row++) {
+                fromBatches.add(new Person(batch.getId(row), batch.getText(row, 0),
+                        batch.getText(row, 1), batch.getText(row, 2)));
+            }
+        }
+        assertEquals((COUNT + 299) / 300, batches.size());
+        assertEquals(persons, fromBatches);
+    }
+
+    @Test
+    void filteredCountIsTheSameInParallel() {
+        long sequential = PersonStream.persons(FIRST_ID, COUNT)
+                .filter(p -> p.getEmail().endsWith(".com")).count();
+        long parallel = PersonStream.persons(FIRST_ID, COUNT).parallel()
+                .filter(p -> p.getEmail().endsWith(".com")).count();
+
+        assertEquals(sequential, parallel);
+    }
+}
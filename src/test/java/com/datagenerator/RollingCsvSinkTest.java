@@ -0,0 +1,110 @@
+package com.datagenerator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RollingCsvSinkTest {
+    @TempDir
+    File tempDir;
+
+    @Test
+    void rollsShardsAndDescribesThemInTheManifest() throws IOException {
+        String base = new File(tempDir, "people").getPath();
+        try (RollingCsvSink sink = new RollingCsvSink(base + ".csv", 40, 0)) {
+            sink.write(persons(1, 100));
+        }
+
+        assertArrayEquals(new String[]{"people.00000.csv", "people.00001.csv", "people.00002.csv",
+                "people.manifest.csv"}, files());
+        List<String> manifest = lines("people.manifest.csv");
+        assertEquals(RollingCsvSink.MANIFEST_HEADER, manifest.get(0));
+        assertEquals(4, manifest.size());
+        long rows = 0;
+        for (int shard = 0; shard < 3; shard++) {
+            String[] fields = manifest.get(shard + 1).split(",");
+            String name = String.format("people.%05d.csv", shard);
+            assertEquals(name, fields[0]);
+            assertEquals(lines(name).size() - 1, Long.parseLong(fields[1]));
+            assertEquals(new File(tempDir, name).length(), Long.parseLong(fields[2]));
+            assertEquals(1 + shard * 40, Long.parseLong(fields[3]));
+            assertEquals(Math.min(100, (shard + 1) * 40), Long.parseLong(fields[4]));
+            rows += Long.parseLong(fields[1]);
+        }
+        assertEquals(100, rows);
+    }
+
+    @Test
+    void aShorterRunRemovesTheShardsOfTheLongerOne() throws IOException {
+        String base = new File(tempDir, "people").getPath();
+        try (RollingCsvSink sink = new RollingCsvSink(base, 10, 0)) {
+            sink.write(persons(1, 50));
+        }
+        Files.write(new File(tempDir, "people.notes.csv").toPath(), "kept".getBytes(StandardCharsets.UTF_8));
+
+        try (RollingCsvSink sink = new RollingCsvSink(base, 10, 0)) {
+            sink.write(persons(51, 70));
+        }
+
+        assertArrayEquals(new String[]{"people.00000.csv", "people.00001.csv", "people.manifest.csv",
+                "people.notes.csv"}, files());
+        assertEquals(3, lines("people.manifest.csv").size());
+    }
+
+    @Test
+    void anAbandonedRunLeavesNoManifest() throws IOException {
+        String base = new File(tempDir, "people").getPath();
+        try (RollingCsvSink sink = new RollingCsvSink(base, 10, 0)) {
+            sink.write(persons(1, 30));
+        }
+        assertTrue(new File(tempDir, "people.manifest.csv").exists());
+
+        try (RollingCsvSink sink = new RollingCsvSink(base, 10, 0)) {
+            sink.write(persons(1, 15));
+            sink.abandon();
+        }
+        assertFalse(new File(tempDir, "people.manifest.csv").exists());
+    }
+
+    @Test
+    void aFailedWriteLeavesNoManifest() throws IOException {
+        String base = new File(tempDir, "people").getPath();
+        try (RollingCsvSink sink = new RollingCsvSink(base, 10, 0)) {
+            // The second shard cannot be created where a directory stands
+            assertTrue(new File(tempDir, "people.00001.csv").mkdir());
+            assertThrows(IOException.class, () -> sink.write(persons(1, 15)));
+        }
+        assertFalse(new File(tempDir, "people.manifest.csv").exists());
+    }
+
+    private static RowBatch persons(long first, long last) {
+        RowBatch batch = new RowBatch((int) (last - first + 1), FanOutPipeline.PERSON_TEXT_COLUMNS);
+        PersonFactory persons = new PersonFactory();
+        for (long id = first; id <= last; id++) {
+            persons.addPerson(batch, id);
+        }
+        return batch;
+    }
+
+    private String[] files() {
+        String[] names = tempDir.list();
+        Arrays.sort(names);
+        return names;
+    }
+
+    private List<String> lines(String name) throws IOException {
+        return Files.readAllLines(new File(tempDir, name).toPath(), StandardCharsets.UTF_8);
+    }
+}
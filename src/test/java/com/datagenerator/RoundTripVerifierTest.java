@@ -0,0 +1,153 @@
+package com.datagenerator;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RoundTripVerifierTest {
+    private static final String URL = "jdbc:h2:mem:verifier;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    // An odd thread count puts the file chunk boundaries in the middle of lines
+    private static final int THREADS = 7;
+
+    private Connection connection;
+    private Properties properties;
+
+    @TempDir
+    File tempDir;
+
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        connection = DriverManager.getConnection(URL, "sa", "");
+        properties = new Properties();
+        properties.setProperty("db.url", URL);
+        properties.setProperty("db.user", "sa");
+        properties.setProperty("db.password", "");
+    }
+
+    @AfterEach
+    void dropTables() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Test
+    void comparesOnlyTheRunsIdRange() throws Exception {
+        JdbcSink.createTable(connection, "try_tb");
+        RowBatch earlier = persons(1, 2000);
+        RowBatch run = persons(2001, 5000);
+        insertPersons(earlier);
+        insertPersons(run);
+        File csv = new File(tempDir, "run.csv");
+        try (CsvSink sink = new CsvSink(csv.getPath())) {
+            sink.write(run);
+        }
+
+        RoundTripVerifier verifier = new RoundTripVerifier(properties, "try_tb", THREADS, 64, 16, 10);
+        assertTrue(verifier.verify(csv, 2001, 5001));
+        assertFalse(verifier.verify(csv), "the whole table also holds the earlier run");
+    }
+
+    @Test
+    void narrowsAChangedRowDownToItsId() throws Exception {
+        JdbcSink.createTable(connection, "try_tb");
+        RowBatch rows = persons(1, 3000);
+        insertPersons(rows);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("UPDATE try_tb SET email = 'changed@example.com' WHERE id = 1234");
+        }
+        File csv = new File(tempDir, "changed.csv");
+        try (CsvSink sink = new CsvSink(csv.getPath())) {
+            sink.write(rows);
+        }
+
+        String output = captureOutput(() ->
+                assertFalse(new RoundTripVerifier(properties, "try_tb", THREADS, 8, 4, 10).verify(csv, 1, 3001)));
+        assertTrue(output.contains("1 mismatching id ranges"), output);
+        assertTrue(output.contains("id 1234: table 1 rows, file 1 rows (contents differ)"), output);
+    }
+
+    @Test
+    void readsQuotedFilesWithTheColumnsOfTheirHeader() throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE people_backup (id BIGINT PRIMARY KEY, name VARCHAR(255), "
+                    + "email VARCHAR(255), address VARCHAR(255), age INT)");
+        }
+        RowBatch rows = new RowBatch(1000, 3);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO people_backup (id, name, email, address, age) VALUES (?, ?, ?, ?, ?)")) {
+            for (int id = 1; id <= 1000; id++) {
+                String name = id % 10 == 0 ? "O\"Neil, Anne" : "Name" + id;
+                int row = rows.addRow(id);
+                rows.addText(name);
+                rows.addText("email" + id + "@example.com");
+                rows.addText("Address " + id);
+                rows.setInt(row, 20 + id % 50);
+                insert.setLong(1, id);
+                insert.setString(2, name);
+                insert.setString(3, "email" + id + "@example.com");
+                insert.setString(4, "Address " + id);
+                insert.setInt(5, 20 + id % 50);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        File csv = new File(tempDir, "export.csv");
+        try (Writer writer = new FileWriter(csv, StandardCharsets.UTF_8)) {
+            writer.write("\"ID\",\"Name\",\"Email\",\"Address\",\"Age\"\n");
+            new CsvRowEncoder(true, true, '"').encode(rows, writer);
+        }
+
+        assertTrue(new RoundTripVerifier(properties, "people_backup", THREADS, 16, 16, 10).verify(csv));
+    }
+
+    private static RowBatch persons(long first, long last) {
+        RowBatch batch = new RowBatch((int) (last - first + 1), FanOutPipeline.PERSON_TEXT_COLUMNS);
+        PersonFactory factory = new PersonFactory();
+        for (long id = first; id <= last; id++) {
+            factory.addPerson(batch, id);
+        }
+        return batch;
+    }
+
+    private void insertPersons(RowBatch batch) throws Exception {
+        try (JdbcSink sink = new JdbcSink(DriverManager.getConnection(URL, "sa", ""), "try_tb")) {
+            sink.write(batch);
+        }
+    }
+
+    private interface Action {
+        void run() throws Exception;
+    }
+
+    private static String captureOutput(Action action) throws Exception {
+        PrintStream original = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8));
+        try {
+            action.run();
+        } finally {
+            System.setOut(original);
+        }
+        return captured.toString(StandardCharsets.UTF_8);
+    }
+}
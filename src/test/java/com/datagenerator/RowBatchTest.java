@@ -0,0 +1,92 @@
+package com.datagenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+class RowBatchTest {
+
+    @Test
+    void lastReleaseReturnsBatchToPool() {
+        RowBatchPool pool = new RowBatchPool(4, 3, 2);
+        RowBatch batch = pool.acquire();
+        addPerson(batch, 1, "Ada", "Lovelace", "ada@example.com");
+
+        batch.release();
+
+        RowBatch reused = pool.acquire();
+        assertSame(batch, reused);
+        assertTrue(reused.isEmpty());
+    }
+
+    @Test
+    void batchStaysOutOfPoolUntilEveryConsumerReleases() {
+        RowBatchPool pool = new RowBatchPool(4, 3, 2);
+        RowBatch batch = pool.acquire();
+        batch.retain(2);
+
+        batch.release();
+        RowBatch other = pool.acquire();
+        assertNotSame(batch, other);
+
+        batch.release();
+        assertSame(batch, pool.acquire());
+    }
+
+    @Test
+    void extraReleaseOfPooledBatchFails() {
+        RowBatchPool pool = new RowBatchPool(4, 3, 2);
+        RowBatch batch = pool.acquire();
+        batch.release();
+
+        assertThrows(IllegalStateException.class, batch::release);
+    }
+
+    @Test
+    void releasingUnpooledBatchLeavesItUntouched() {
+        RowBatch batch = new RowBatch(4, 3);
+        addPerson(batch, 7, "Alan", "Turing", "alan@example.com");
+
+        batch.release();
+        batch.release();
+
+        assertEquals(1, batch.size());
+        assertEquals("Turing", batch.getText(0, 1));
+    }
+
+    @Test
+    void serializedBatchReadsBackUnchanged() {
+        RowBatch batch = new RowBatch(4, 3);
+        addPerson(batch, 10, "Grace", "Hopper", "grace@example.com");
+        batch.setInt(addPerson(batch, 11, "", "Noether", "\u00e9milie@example.com"), 42);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(batch.serializedSize() + 5);
+        buffer.position(5);
+
+        batch.writeTo(buffer);
+        assertEquals(buffer.capacity(), buffer.position());
+        buffer.position(5);
+        RowBatch copy = new RowBatch(4, 3);
+        copy.readFrom(buffer);
+
+        assertEquals(2, copy.size());
+        assertEquals(11, copy.getId(1));
+        assertEquals(42, copy.getInt(1));
+        assertEquals("Grace", copy.getText(0, 0));
+        assertEquals("", copy.getText(1, 0));
+        assertEquals("\u00e9milie@example.com", copy.getText(1, 2));
+    }
+
+    private static int addPerson(RowBatch batch, long id, String firstName, String lastName, String email) {
+        int row = batch.addRow(id);
+        batch.addText(firstName);
+        batch.addText(lastName);
+        batch.addText(email);
+        return row;
+    }
+}
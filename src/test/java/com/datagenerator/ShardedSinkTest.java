@@ -0,0 +1,83 @@
+package com.datagenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ShardedSinkTest {
+    private static final List<String> SUFFIXES = Arrays.asList("_0", "_1", "_2");
+    private static final int ROWS = 3000;
+
+    @Test
+    void rangeRoutingGivesEveryShardOneContiguousSlice() throws Exception {
+        String url = "jdbc:h2:mem:range_shards;MODE=MySQL;DB_CLOSE_DELAY=-1";
+        load(url, ShardedSink.Routing.RANGE);
+
+        for (int shard = 0; shard < SUFFIXES.size(); shard++) {
+            long[] stats = stats(url, "person" + SUFFIXES.get(shard));
+            assertEquals(ROWS / 3, stats[0]);
+            assertEquals(1 + shard * (ROWS / 3), stats[1]);
+            assertEquals((shard + 1) * (ROWS / 3), stats[2]);
+        }
+    }
+
+    @Test
+    void hashRoutingSpreadsEveryRowToExactlyOneShard() throws Exception {
+        String url = "jdbc:h2:mem:hash_shards;MODE=MySQL;DB_CLOSE_DELAY=-1";
+        load(url, ShardedSink.Routing.HASH);
+
+        long total = 0;
+        for (String suffix : SUFFIXES) {
+            long rows = stats(url, "person" + suffix)[0];
+            assertTrue(Math.abs(rows - ROWS / 3) < ROWS / 10, suffix + " holds " + rows + " rows");
+            total += rows;
+        }
+        assertEquals(ROWS, total);
+        try (Connection conn = DriverManager.getConnection(url, "sa", "");
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(DISTINCT id) FROM ("
+                     + "SELECT id FROM person_0 UNION ALL SELECT id FROM person_1 UNION ALL SELECT id FROM person_2)")) {
+            rs.next();
+            assertEquals(ROWS, rs.getLong(1));
+        }
+    }
+
+    private static void load(String url, ShardedSink.Routing routing) throws Exception {
+        ShardedSink sink = new ShardedSink(Collections.singletonList(url), "person", SUFFIXES, "sa", "",
+                routing, ROWS, 100, 2, 4);
+        assertEquals(1, sink.getFirstId());
+        try (sink) {
+            RowBatch batch = new RowBatch(250, FanOutPipeline.PERSON_TEXT_COLUMNS);
+            for (long id = 1; id <= ROWS; id++) {
+                batch.addRow(id);
+                batch.addText("First" + id);
+                batch.addText("Last" + id);
+                batch.addText("person" + id + "@example.com");
+                if (batch.isFull()) {
+                    sink.write(batch);
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    /** Returns the row count, lowest and highest id of a table. */
+    private static long[] stats(String url, String table) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url, "sa", "");
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*), MIN(id), MAX(id) FROM " + table)) {
+            rs.next();
+            return new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)};
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.datagenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SpillBufferTest {
+    private static final int BATCH_ROWS = 10;
+    // Small segments and little direct memory, so most segments spill to files
+    private static final int SEGMENT_BYTES = 4096;
+    private static final long OFF_HEAP_BYTES = 2 * SEGMENT_BYTES;
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void putReleasesTheBatchAndTakeReturnsItsRows() throws InterruptedException {
+        RowBatchPool pool = new RowBatchPool(BATCH_ROWS, 3, 1);
+        SpillBuffer buffer = new SpillBuffer(BATCH_ROWS, 3, 1, OFF_HEAP_BYTES, 0, SEGMENT_BYTES, tempDir);
+        RowBatch batch = pool.acquire();
+        fill(batch, 1);
+
+        buffer.put(batch);
+        assertSame(batch, pool.acquire(), "put hands its reference back to the pool");
+
+        RowBatch taken = buffer.take();
+        for (int row = 0; row < BATCH_ROWS; row++) {
+            assertEquals(1 + row, taken.getId(row));
+            assertEquals("First" + (1 + row), taken.getText(row, 0));
+            assertEquals("person" + (1 + row) + "@example.com", taken.getText(row, 2));
+        }
+        taken.release();
+        assertEquals(0, buffer.getPendingBytes());
+        buffer.close();
+    }
+
+    @Test
+    void spilledBatchesComeBackInOrderAndTheirFilesAreDeleted() throws InterruptedException {
+        SpillBuffer buffer = new SpillBuffer(BATCH_ROWS, 3, 1, OFF_HEAP_BYTES, 0, SEGMENT_BYTES, tempDir);
+        int batches = 500;
+        for (int i = 0; i < batches; i++) {
+            RowBatch batch = new RowBatch(BATCH_ROWS, 3);
+            fill(batch, 1 + (long) i * BATCH_ROWS);
+            buffer.put(batch);
+        }
+        assertTrue(buffer.getPendingBytes() > 10 * OFF_HEAP_BYTES, "most segments are spilled");
+        buffer.finish();
+
+        long expected = 1;
+        for (RowBatch taken = buffer.take(); taken != null; taken = buffer.take()) {
+            for (int row = 0; row < taken.size(); row++) {
+                assertEquals(expected++, taken.getId(row));
+            }
+            taken.release();
+        }
+        assertEquals(1 + (long) batches * BATCH_ROWS, expected);
+        assertEquals(0, buffer.getPendingBytes());
+        assertEquals(0, tempDir.list().length, "drained spill files are deleted");
+        buffer.close();
+    }
+
+    @Test
+    void concurrentProducersLoseNoRows() throws InterruptedException {
+        int producers = 4;
+        int batchesEach = 300;
+        SpillBuffer buffer = new SpillBuffer(BATCH_ROWS, 3, 2, OFF_HEAP_BYTES, 0, SEGMENT_BYTES, tempDir);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long firstId = (long) p * batchesEach * BATCH_ROWS + 1;
+            Thread producer = new Thread(() -> {
+                try {
+                    for (int i = 0; i < batchesEach; i++) {
+                        RowBatch batch = new RowBatch(BATCH_ROWS, 3);
+                        fill(batch, firstId + (long) i * BATCH_ROWS);
+                        buffer.put(batch);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads.add(producer);
+            producer.start();
+        }
+
+        boolean[] seen = new boolean[producers * batchesEach * BATCH_ROWS + 1];
+        long[] lastIdPerProducer = new long[producers];
+        AtomicBoolean outOfOrder = new AtomicBoolean();
+        Thread consumer = new Thread(() -> {
+            try {
+                for (RowBatch taken = buffer.take(); taken != null; taken = buffer.take()) {
+                    for (int row = 0; row < taken.size(); row++) {
+                        int id = (int) taken.getId(row);
+                        int producer = (id - 1) / (batchesEach * BATCH_ROWS);
+                        // Each producer's rows must arrive in the order it put them
+                        if (id <= lastIdPerProducer[producer]) {
+                            outOfOrder.set(true);
+                        }
+                        lastIdPerProducer[producer] = id;
+                        seen[id] = true;
+                    }
+                    taken.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        for (Thread producer : threads) {
+            producer.join();
+        }
+        buffer.finish();
+        consumer.join();
+
+        assertFalse(outOfOrder.get());
+        for (int id = 1; id < seen.length; id++) {
+            assertTrue(seen[id], "id " + id + " was lost");
+        }
+        assertEquals(0, buffer.getPendingBytes());
+        buffer.close();
+        assertEquals(0, tempDir.list().length);
+    }
+
+    @Test
+    void producersBlockAtTheByteLimitUntilAConsumerTakes() throws InterruptedException {
+        RowBatch sample = new RowBatch(BATCH_ROWS, 3);
+        fill(sample, 1);
+        int batchBytes = sample.serializedSize();
+        SpillBuffer buffer = new SpillBuffer(BATCH_ROWS, 3, 1, OFF_HEAP_BYTES, 2L * batchBytes,
+                SEGMENT_BYTES, tempDir);
+        buffer.put(copy(sample));
+        buffer.put(copy(sample));
+
+        Thread producer = new Thread(() -> {
+            try {
+                buffer.put(copy(sample));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        producer.join(300);
+        assertTrue(producer.isAlive(), "the third batch must wait for room");
+        assertEquals(2L * batchBytes, buffer.getPendingBytes());
+
+        buffer.take().release();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertEquals(2L * batchBytes, buffer.getPendingBytes());
+
+        buffer.finish();
+        buffer.take().release();
+        buffer.take().release();
+        assertNull(buffer.take());
+        buffer.close();
+    }
+
+    private static void fill(RowBatch batch, long firstId) {
+        for (long id = firstId; id < firstId + BATCH_ROWS; id++) {
+            batch.addRow(id);
+            batch.addText("First" + id);
+            batch.addText("Last" + id);
+            batch.addText("person" + id + "@example.com");
+        }
+    }
+
+    private static RowBatch copy(RowBatch source) {
+        RowBatch copy = new RowBatch(BATCH_ROWS, 3);
+        for (int row = 0; row < source.size(); row++) {
+            copy.addRowFrom(source, row);
+        }
+        return copy;
+    }
+}
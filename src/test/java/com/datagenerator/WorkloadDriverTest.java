@@ -0,0 +1,71 @@
+package com.datagenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WorkloadDriverTest {
+    private static final String URL = "jdbc:h2:mem:workload;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void emailLookupsRunAgainstAnIndexCreatedOnce() throws Exception {
+        Connection connection = DriverManager.getConnection(URL, "sa", "");
+        JdbcSink.createTable(connection, "try_tb");
+        try (JdbcSink sink = new JdbcSink(connection, "try_tb")) {
+            RowBatch batch = new RowBatch(200, FanOutPipeline.PERSON_TEXT_COLUMNS);
+            PersonFactory persons = new PersonFactory();
+            for (long id = 1; id <= 200; id++) {
+                persons.addPerson(batch, id);
+            }
+            sink.write(batch);
+        }
+        File report = new File(tempDir, "report.csv");
+        Properties properties = new Properties();
+        properties.setProperty("db.url", URL);
+        properties.setProperty("db.user", "sa");
+        properties.setProperty("db.password", "");
+        properties.setProperty("workload.threads", "2");
+        properties.setProperty("workload.duration.seconds", "0.3");
+        properties.setProperty("workload.interval.seconds", "1");
+        properties.setProperty("workload.mix", "email:1");
+        properties.setProperty("workload.report.path", report.getPath());
+
+        new WorkloadDriver(properties).run();
+        new WorkloadDriver(properties).run();
+
+        assertEquals(1, emailIndexes());
+        List<String> lines = Files.readAllLines(report.toPath(), StandardCharsets.UTF_8);
+        String email = lines.stream().filter(line -> line.contains(",email,")).findFirst().orElseThrow();
+        // Every generated email is found: no misses and no errors
+        String[] fields = email.split(",");
+        assertEquals("0", fields[5]);
+        assertEquals("0", fields[6]);
+    }
+
+    private static int emailIndexes() throws SQLException {
+        int indexes = 0;
+        try (Connection conn = DriverManager.getConnection(URL, "sa", "");
+             ResultSet rs = conn.getMetaData().getIndexInfo(null, null, "TRY_TB", false, false)) {
+            while (rs.next()) {
+                if ("email".equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                    indexes++;
+                }
+            }
+        }
+        return indexes;
+    }
+}